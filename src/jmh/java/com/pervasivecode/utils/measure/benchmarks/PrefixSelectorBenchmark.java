@@ -0,0 +1,88 @@
+package com.pervasivecode.utils.measure.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import javax.measure.Quantity;
+import javax.measure.Unit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import com.pervasivecode.utils.measure.IecBinaryPrefixSelector;
+import com.pervasivecode.utils.measure.SiPrefixSelector;
+import com.pervasivecode.utils.measure.StickyPrefixSelector;
+import systems.uom.quantity.Information;
+import systems.uom.unicode.CLDR;
+import tec.uom.se.quantity.Quantities;
+
+/**
+ * Measure the cost of selecting a prefix with {@link SiPrefixSelector} and
+ * {@link IecBinaryPrefixSelector}, for values of various magnitudes, and with a
+ * {@link StickyPrefixSelector} wrapped around the SI selector for a series of values that all have
+ * the same prefix.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class PrefixSelectorBenchmark {
+  @Param({"0.0035", "17", "1536", "3.2e6", "1.5e12", "-3.2e6", "4.5e24"})
+  public double value;
+
+  private SiPrefixSelector siSelector;
+  private IecBinaryPrefixSelector iecSelector;
+  private StickyPrefixSelector stickySiSelector;
+  private Quantity<Information> bytes;
+  private long longValue;
+
+  @Setup
+  public void setup() {
+    siSelector = new SiPrefixSelector();
+    iecSelector = new IecBinaryPrefixSelector();
+    stickySiSelector = new StickyPrefixSelector(siSelector);
+    bytes = Quantities.getQuantity(value, CLDR.BYTE);
+    longValue = (long) value;
+  }
+
+  @Benchmark
+  public Quantity<Information> siSelectBestPrefixQuantity() {
+    return siSelector.selectBestPrefix(bytes, CLDR.BYTE);
+  }
+
+  @Benchmark
+  public Unit<Information> siSelectBestPrefixedUnitDouble() {
+    return siSelector.selectBestPrefixedUnit(value, CLDR.BYTE);
+  }
+
+  @Benchmark
+  public Quantity<Information> iecSelectBestPrefixQuantity() {
+    return iecSelector.selectBestPrefix(bytes, CLDR.BYTE);
+  }
+
+  @Benchmark
+  public Unit<Information> iecSelectBestPrefixedUnitDouble() {
+    return iecSelector.selectBestPrefixedUnit(value, CLDR.BYTE);
+  }
+
+  @Benchmark
+  public Unit<Information> iecSelectBestPrefixedUnitLong() {
+    return iecSelector.selectBestPrefixedUnit(longValue, CLDR.BYTE);
+  }
+
+  @Benchmark
+  public double siPrefixIndexAndScaleDouble() {
+    return siSelector.scale(value, siSelector.prefixIndexFor(value));
+  }
+
+  @Benchmark
+  public double iecPrefixIndexAndScaleDouble() {
+    return iecSelector.scale(value, iecSelector.prefixIndexFor(value));
+  }
+
+  @Benchmark
+  public double stickySiPrefixIndexAndScaleDouble() {
+    return stickySiSelector.scale(value, stickySiSelector.prefixIndexFor(value));
+  }
+}
@@ -0,0 +1,55 @@
+package com.pervasivecode.utils.measure.benchmarks;
+
+import static systems.uom.unicode.CLDR.BYTE;
+import java.util.concurrent.TimeUnit;
+import javax.measure.Quantity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import com.pervasivecode.utils.measure.QuantityHistogram;
+import systems.uom.quantity.Information;
+import tec.uom.lib.common.BinaryPrefix;
+import tec.uom.se.quantity.Quantities;
+
+/**
+ * Measure the cost of recording values in a {@link QuantityHistogram}, both as raw values and as
+ * quantities.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class QuantityHistogramBenchmark {
+  private QuantityHistogram<Information> histogram;
+  private Quantity<Information> quantity;
+  private Quantity<Information> kibibytes;
+  private Quantity<Information> otherKibibytes;
+
+  @Setup
+  public void setup() {
+    histogram = QuantityHistogram.forInformation();
+    quantity = Quantities.getQuantity(1_500_000L, BYTE);
+    // BinaryPrefix.KIBI returns a new, equal unit instance on each call.
+    kibibytes = Quantities.getQuantity(1_500L, BinaryPrefix.KIBI(BYTE));
+    otherKibibytes = Quantities.getQuantity(1_500L, BinaryPrefix.KIBI(BYTE));
+  }
+
+  @Benchmark
+  public void recordValue() {
+    histogram.record(1_500_000.0d);
+  }
+
+  @Benchmark
+  public void recordQuantity() {
+    histogram.record(quantity);
+  }
+
+  @Benchmark
+  public void recordQuantitiesWithEqualButDistinctUnits() {
+    histogram.record(kibibytes);
+    histogram.record(otherKibibytes);
+  }
+}
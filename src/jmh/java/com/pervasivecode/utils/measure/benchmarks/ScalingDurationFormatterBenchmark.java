@@ -0,0 +1,67 @@
+package com.pervasivecode.utils.measure.benchmarks;
+
+import static tec.uom.se.unit.MetricPrefix.NANO;
+import static tec.uom.se.unit.Units.SECOND;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import javax.measure.Quantity;
+import javax.measure.quantity.Time;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import com.pervasivecode.utils.measure.ScalingDurationFormatter;
+import com.pervasivecode.utils.time.DurationFormats;
+import com.pervasivecode.utils.time.DurationFormatter;
+import tec.uom.se.quantity.Quantities;
+
+/**
+ * Measure the cost of formatting time values with {@link ScalingDurationFormatter}, for quantities
+ * expressed in nanoseconds (as a long) and in seconds (as a double), and for raw nanosecond counts
+ * and Durations.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class ScalingDurationFormatterBenchmark {
+  @Param({"1", "1500000", "86400001000000", "9000000000000000000"})
+  public long nanos;
+
+  private ScalingDurationFormatter formatter;
+  private Quantity<Time> nanosQuantity;
+  private Quantity<Time> secondsQuantity;
+  private Duration duration;
+
+  @Setup
+  public void setup() {
+    formatter = new ScalingDurationFormatter(
+        new DurationFormatter(DurationFormats.getUsDefaultInstance()));
+    nanosQuantity = Quantities.getQuantity(nanos, NANO(SECOND));
+    secondsQuantity = Quantities.getQuantity(nanos / 1e9, SECOND);
+    duration = Duration.ofNanos(nanos);
+  }
+
+  @Benchmark
+  public String formatNanosQuantity() {
+    return formatter.format(nanosQuantity);
+  }
+
+  @Benchmark
+  public String formatSecondsQuantity() {
+    return formatter.format(secondsQuantity);
+  }
+
+  @Benchmark
+  public String formatNanosLong() {
+    return formatter.format(nanos);
+  }
+
+  @Benchmark
+  public String formatDuration() {
+    return formatter.format(duration);
+  }
+}
@@ -0,0 +1,148 @@
+package com.pervasivecode.utils.measure.benchmarks;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import javax.measure.Quantity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import com.pervasivecode.utils.measure.InformationRateUnits;
+import com.pervasivecode.utils.measure.MemoizingQuantityFormatter;
+import com.pervasivecode.utils.measure.PrefixSystem;
+import com.pervasivecode.utils.measure.ScalingColumnFormatter;
+import com.pervasivecode.utils.measure.ScalingFormatter;
+import com.pervasivecode.utils.measure.ScalingFormatters;
+import com.pervasivecode.utils.measure.ScalingUtf8Encoder;
+import systems.uom.quantity.Information;
+import systems.uom.quantity.InformationRate;
+import systems.uom.unicode.CLDR;
+import tec.uom.se.quantity.Quantities;
+
+/**
+ * Measure the cost of formatting information and information rate values with
+ * {@link ScalingFormatter}, via each of its entry points.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class ScalingFormatterBenchmark {
+  private static final int BATCH_SIZE = 1_000;
+
+  @Param({"17", "1536", "3.2e6", "1.5e12", "-3.2e6", "4.5e24"})
+  public double value;
+
+  private ScalingFormatter<Information> iecBytesFormatter;
+  private ScalingFormatter<Information> fastIecBytesFormatter;
+  private MemoizingQuantityFormatter<Information> memoizedIecBytesFormatter;
+  private ScalingFormatter<InformationRate> siBitsPerSecondFormatter;
+  private Quantity<Information> bytes;
+  private Quantity<InformationRate> bitsPerSecond;
+  private StringBuilder output;
+  private double[] batchOfValues;
+  private String[] batchOutput;
+  private ScalingUtf8Encoder<Information> iecBytesEncoder;
+  private ScalingUtf8Encoder<Information> fastIecBytesEncoder;
+  private ScalingColumnFormatter<Information> iecBytesColumnFormatter;
+  private ScalingColumnFormatter<Information> fastIecBytesColumnFormatter;
+  private byte[] encodedOutput;
+
+  @Setup
+  public void setup() {
+    iecBytesFormatter = ScalingFormatters.dataAmountInIecBinaryBytesUs();
+    fastIecBytesFormatter =
+        ScalingFormatters.getFastInstance(CLDR.BYTE, PrefixSystem.IEC_BINARY, Locale.US);
+    memoizedIecBytesFormatter = new MemoizingQuantityFormatter<>(iecBytesFormatter, 64);
+    siBitsPerSecondFormatter = ScalingFormatters.dataRateInSiBitsPerSecondUs();
+    bytes = Quantities.getQuantity(value, CLDR.BYTE);
+    bitsPerSecond = Quantities.getQuantity(value, InformationRateUnits.BITS_PER_SECOND);
+    output = new StringBuilder();
+    batchOfValues = new double[BATCH_SIZE];
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      // Values of similar magnitude, like a column of a table.
+      batchOfValues[i] = value * (1 + (i % 10) / 10.0);
+    }
+    batchOutput = new String[BATCH_SIZE];
+    iecBytesEncoder = new ScalingUtf8Encoder<>(iecBytesFormatter);
+    fastIecBytesEncoder = new ScalingUtf8Encoder<>(fastIecBytesFormatter);
+    iecBytesColumnFormatter = new ScalingColumnFormatter<>(iecBytesFormatter,
+        ScalingColumnFormatter.PrefixBasis.MAXIMUM);
+    fastIecBytesColumnFormatter = new ScalingColumnFormatter<>(fastIecBytesFormatter,
+        ScalingColumnFormatter.PrefixBasis.MAXIMUM);
+    encodedOutput = new byte[64];
+  }
+
+  @Benchmark
+  public String formatIecBytesQuantity() {
+    return iecBytesFormatter.format(bytes);
+  }
+
+  @Benchmark
+  public String formatIecBytesQuantityMemoized() {
+    return memoizedIecBytesFormatter.format(bytes);
+  }
+
+  @Benchmark
+  public String formatIecBytesDouble() {
+    return iecBytesFormatter.format(value);
+  }
+
+  @Benchmark
+  public StringBuilder formatToIecBytesDouble() {
+    output.setLength(0);
+    return iecBytesFormatter.formatTo(value, output);
+  }
+
+  @Benchmark
+  public String formatIecBytesDoubleFast() {
+    return fastIecBytesFormatter.format(value);
+  }
+
+  @Benchmark
+  public StringBuilder formatToIecBytesDoubleFast() {
+    output.setLength(0);
+    return fastIecBytesFormatter.formatTo(value, output);
+  }
+
+  @Benchmark
+  public String[] formatAllIecBytes() {
+    iecBytesFormatter.formatAll(batchOfValues, CLDR.BYTE, batchOutput);
+    return batchOutput;
+  }
+
+  @Benchmark
+  public String[] formatColumnIecBytes() {
+    iecBytesColumnFormatter.formatColumn(batchOfValues, CLDR.BYTE, batchOutput);
+    return batchOutput;
+  }
+
+  @Benchmark
+  public String[] formatColumnIecBytesFast() {
+    fastIecBytesColumnFormatter.formatColumn(batchOfValues, CLDR.BYTE, batchOutput);
+    return batchOutput;
+  }
+
+  @Benchmark
+  public int encodeIecBytesDouble() {
+    return iecBytesEncoder.encode(value, encodedOutput, 0);
+  }
+
+  @Benchmark
+  public int encodeIecBytesDoubleFast() {
+    return fastIecBytesEncoder.encode(value, encodedOutput, 0);
+  }
+
+  @Benchmark
+  public String formatSiBitsPerSecondQuantity() {
+    return siBitsPerSecondFormatter.format(bitsPerSecond);
+  }
+
+  @Benchmark
+  public String formatSiBitsPerSecondDouble() {
+    return siBitsPerSecondFormatter.format(value);
+  }
+}
@@ -0,0 +1,85 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import javax.measure.Quantity;
+import javax.measure.Unit;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * A thread-safe, size-bounded cache that maps each unit to one canonical instance of all the units
+ * that are {@link Object#equals(Object) equal} to it, so that caches keyed by unit identity (such
+ * as {@link UnitConverterCache}) can treat equal units as the same unit.
+ * <p>
+ * This matters because some ways of constructing units, such as
+ * {@link tec.uom.se.unit.MetricPrefix#KILO(Unit) MetricPrefix.KILO(BYTE)}, return a new instance
+ * every time. Without canonicalization, every such instance would miss an identity-keyed cache, and
+ * would then occupy an entry of its own that is never used again.
+ * <p>
+ * A unit that is already canonical is recognized by identity, without calling its expensive
+ * {@code hashCode} and {@code equals} methods. Only a unit that is not (such as a newly constructed
+ * prefixed unit) is looked up by equality.
+ */
+final class CanonicalUnitCache {
+  static final int DEFAULT_MAXIMUM_SIZE = 1024;
+
+  private static final CanonicalUnitCache SHARED = new CanonicalUnitCache(DEFAULT_MAXIMUM_SIZE);
+
+  // The canonical instances, compared by identity. (Caches with weak keys compare keys by
+  // identity.) The values are unused.
+  private final Cache<Unit<?>, Boolean> canonicalUnitsByIdentity;
+  // The canonical instance for each unit, compared by equality.
+  private final Cache<Unit<?>, Unit<?>> canonicalUnitsByValue;
+
+  /**
+   * Get the cache instance shared by the caches and formatters in this package.
+   *
+   * @return The shared cache.
+   */
+  static CanonicalUnitCache shared() {
+    return SHARED;
+  }
+
+  CanonicalUnitCache(long maximumSize) {
+    checkArgument(maximumSize > 0, "maximumSize must be positive, but was %s", maximumSize);
+    this.canonicalUnitsByIdentity = CacheBuilder.newBuilder() //
+        .weakKeys() //
+        .maximumSize(maximumSize) //
+        .build();
+    this.canonicalUnitsByValue = CacheBuilder.newBuilder() //
+        .maximumSize(maximumSize) //
+        .build();
+  }
+
+  /**
+   * Get the canonical instance of a unit.
+   * <p>
+   * Once the cache is full, the least recently used canonical units are evicted, so a unit that
+   * was canonical may later be equal to a different canonical instance. Callers should therefore
+   * only rely on canonical units to make identity-keyed caches more effective, not for
+   * correctness.
+   *
+   * @param <Q> The kind of quantity that the unit measures. Example:
+   *        {@link javax.measure.quantity.Length Length}
+   * @param unit The unit.
+   * @return A unit that is equal to {@code unit}, and that is the same instance as the one returned
+   *         for any other equal unit.
+   */
+  @SuppressWarnings("unchecked")
+  <Q extends Quantity<Q>> Unit<Q> canonical(Unit<Q> unit) {
+    if (canonicalUnitsByIdentity.getIfPresent(checkNotNull(unit)) != null) {
+      return unit;
+    }
+    // Check without inserting first, since putIfAbsent always locks a segment of the cache.
+    Unit<?> canonicalUnit = canonicalUnitsByValue.getIfPresent(unit);
+    if (canonicalUnit == null) {
+      canonicalUnit = canonicalUnitsByValue.asMap().putIfAbsent(unit, unit);
+    }
+    if (canonicalUnit == null || canonicalUnit == unit) {
+      canonicalUnitsByIdentity.put(unit, Boolean.TRUE);
+      return unit;
+    }
+    return (Unit<Q>) canonicalUnit;
+  }
+}
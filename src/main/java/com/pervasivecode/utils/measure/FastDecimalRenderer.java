@@ -0,0 +1,254 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.Locale;
+
+/**
+ * A renderer of {@code double} values that produces exactly the same output as
+ * {@link NumberFormat#getInstance(Locale)} for a supported locale, such as {@link Locale#US}, but
+ * which is much faster, does not allocate any objects when appending to a {@link StringBuilder},
+ * and is safe for concurrent use by multiple threads.
+ * <p>
+ * A locale is supported if its default number format uses the pattern {@code #,##0.###} (up to
+ * three fraction digits, with a grouping separator every three integer digits) with half-even
+ * rounding, as most locales do. The locale's digits, separators, and minus sign are used.
+ * <p>
+ * Values are rounded using fixed-point {@code long} arithmetic on the exact binary value of the
+ * {@code double}, which gives the same result as {@link DecimalFormat} for any value whose
+ * precision is finer than the last fraction digit. Values that are not finite, or whose magnitude
+ * is 2<sup>43</sup> (about 8.8 trillion) or more, are rare when formatting scaled values, so they
+ * are delegated to a {@link NumberFormat} rather than rendered directly.
+ *
+ * @see ScalingFormatters#getFastInstance(javax.measure.Unit, PrefixSystem, Locale)
+ */
+public final class FastDecimalRenderer {
+  private static final int MAX_FRACTION_DIGITS = 3;
+  private static final long FRACTION_SCALE = 1000L;
+  private static final String SUPPORTED_PATTERN = "#,##0.###";
+
+  // 10^i for every power of ten up to the first one that is larger than 2^43.
+  private static final long[] POWERS_OF_TEN = new long[14];
+  static {
+    POWERS_OF_TEN[0] = 1L;
+    for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+      POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10L;
+    }
+  }
+
+  private static final int EXPONENT_BIAS = 1023;
+  private static final int SIGNIFICAND_BITS = 52;
+  private static final long SIGNIFICAND_MASK = (1L << SIGNIFICAND_BITS) - 1L;
+  private static final int EXPONENT_MASK = 0x7FF;
+  // Below 2^43, the gap between adjacent doubles is smaller than 0.001, so the shortest decimal
+  // representation of a value (which DecimalFormat uses) rounds to the same three fraction digits
+  // as the exact binary value does. Larger values are delegated to fallbackFormat.
+  private static final int MAX_DIRECT_BIASED_EXPONENT = EXPONENT_BIAS + 43;
+
+  private static final FastDecimalRenderer US_INSTANCE = forLocale(Locale.US);
+
+  private final char zeroDigit;
+  private final char groupingSeparator;
+  private final char decimalSeparator;
+  private final String negativePrefix;
+  // Used only for values that are not rendered directly. NumberFormat is not thread-safe.
+  private final ThreadLocal<NumberFormat> fallbackFormat;
+
+  private FastDecimalRenderer(Locale locale, DecimalFormat format) {
+    DecimalFormatSymbols symbols = format.getDecimalFormatSymbols();
+    this.zeroDigit = symbols.getZeroDigit();
+    this.groupingSeparator = symbols.getGroupingSeparator();
+    this.decimalSeparator = symbols.getDecimalSeparator();
+    this.negativePrefix = format.getNegativePrefix();
+    this.fallbackFormat = ThreadLocal.withInitial(() -> NumberFormat.getInstance(locale));
+  }
+
+  /**
+   * Get a renderer that produces the same output as {@code NumberFormat.getInstance(Locale.US)}.
+   *
+   * @return The renderer.
+   */
+  public static FastDecimalRenderer getUsInstance() {
+    return US_INSTANCE;
+  }
+
+  /**
+   * Determine whether a FastDecimalRenderer can produce the same output as
+   * {@link NumberFormat#getInstance(Locale)} for the specified locale.
+   *
+   * @param locale The locale.
+   * @return True if the locale is supported.
+   */
+  public static boolean isSupported(Locale locale) {
+    return supportedFormat(checkNotNull(locale)) != null;
+  }
+
+  /**
+   * Get a renderer that produces the same output as {@link NumberFormat#getInstance(Locale)} for
+   * the specified locale.
+   *
+   * @param locale The locale.
+   * @return The renderer.
+   * @throws IllegalArgumentException if the locale is not supported.
+   * @see #isSupported(Locale)
+   */
+  public static FastDecimalRenderer forLocale(Locale locale) {
+    DecimalFormat format = supportedFormat(checkNotNull(locale));
+    checkArgument(format != null, "The number format of locale %s is not supported", locale);
+    return new FastDecimalRenderer(locale, format);
+  }
+
+  private static DecimalFormat supportedFormat(Locale locale) {
+    NumberFormat numberFormat = NumberFormat.getInstance(locale);
+    if (!(numberFormat instanceof DecimalFormat)) {
+      return null;
+    }
+    DecimalFormat format = (DecimalFormat) numberFormat;
+    boolean isSupported = SUPPORTED_PATTERN.equals(format.toPattern())
+        && format.getRoundingMode() == RoundingMode.HALF_EVEN
+        && format.getMultiplier() == 1
+        && format.isGroupingUsed()
+        && format.getGroupingSize() == 3
+        && !format.isDecimalSeparatorAlwaysShown()
+        && format.getMinimumIntegerDigits() == 1
+        && format.getMinimumFractionDigits() == 0
+        && format.getMaximumFractionDigits() == MAX_FRACTION_DIGITS
+        && format.getPositivePrefix().isEmpty()
+        && format.getPositiveSuffix().isEmpty()
+        && format.getNegativeSuffix().isEmpty();
+    return isSupported ? format : null;
+  }
+
+  /**
+   * Render a value.
+   *
+   * @param value The value to render.
+   * @return The rendered value.
+   */
+  public String format(double value) {
+    return appendTo(value, new StringBuilder()).toString();
+  }
+
+  /**
+   * Render a value, appending it to the specified StringBuilder.
+   *
+   * @param value The value to render.
+   * @param output The StringBuilder to which the rendered value will be appended.
+   * @return {@code output}, for call chaining.
+   */
+  public StringBuilder appendTo(double value, StringBuilder output) {
+    long bits = Double.doubleToRawLongBits(value);
+    int biasedExponent = (int) (bits >>> SIGNIFICAND_BITS) & EXPONENT_MASK;
+    if (biasedExponent >= MAX_DIRECT_BIASED_EXPONENT) {
+      // Too large to render directly, or not finite.
+      return output.append(fallbackFormat.get().format(value));
+    }
+
+    // The value is significand * 2^exponent, where the exponent is always negative.
+    long significand = bits & SIGNIFICAND_MASK;
+    int exponent;
+    if (biasedExponent == 0) {
+      exponent = 1 - EXPONENT_BIAS - SIGNIFICAND_BITS;
+    } else {
+      significand |= 1L << SIGNIFICAND_BITS;
+      exponent = biasedExponent - EXPONENT_BIAS - SIGNIFICAND_BITS;
+    }
+
+    long thousandths = roundHalfEven(significand * FRACTION_SCALE, -exponent);
+    long integerPart = thousandths / FRACTION_SCALE;
+    int fractionPart = (int) (thousandths % FRACTION_SCALE);
+
+    if (bits < 0) {
+      // Like DecimalFormat, this includes negative values that round to zero, and negative zero.
+      output.append(negativePrefix);
+    }
+    appendGroupedInteger(integerPart, output);
+    appendFraction(fractionPart, output);
+    return output;
+  }
+
+  /**
+   * Render an integer value exactly, with the same output as {@link NumberFormat#format(long)}.
+   *
+   * @param value The value to render.
+   * @return The rendered value.
+   */
+  public String format(long value) {
+    return appendTo(value, new StringBuilder()).toString();
+  }
+
+  /**
+   * Render an integer value exactly, appending it to the specified StringBuilder.
+   *
+   * @param value The value to render.
+   * @param output The StringBuilder to which the rendered value will be appended.
+   * @return {@code output}, for call chaining.
+   */
+  public StringBuilder appendTo(long value, StringBuilder output) {
+    long limit = POWERS_OF_TEN[POWERS_OF_TEN.length - 1];
+    if (value <= -limit || value >= limit) {
+      // Too many digits to render directly.
+      return output.append(fallbackFormat.get().format(value));
+    }
+    if (value < 0) {
+      output.append(negativePrefix);
+    }
+    appendGroupedInteger(Math.abs(value), output);
+    return output;
+  }
+
+  /**
+   * Compute {@code numerator / 2^shift}, rounded to the nearest integer, with ties rounded to the
+   * nearest even integer. The numerator must not be negative.
+   */
+  private static long roundHalfEven(long numerator, int shift) {
+    if (shift >= Long.SIZE) {
+      // The quotient is less than 1/2.
+      return 0L;
+    }
+    long quotient = numerator >> shift;
+    long remainder = numerator & ((1L << shift) - 1L);
+    long half = 1L << (shift - 1);
+    if (remainder > half || (remainder == half && (quotient & 1L) != 0)) {
+      quotient++;
+    }
+    return quotient;
+  }
+
+  private void appendGroupedInteger(long value, StringBuilder output) {
+    int numDigits = 1;
+    while (value >= POWERS_OF_TEN[numDigits]) {
+      numDigits++;
+    }
+    long remaining = value;
+    for (int i = numDigits - 1; i >= 0; i--) {
+      long power = POWERS_OF_TEN[i];
+      int digit = (int) (remaining / power);
+      remaining -= digit * power;
+      output.append((char) (zeroDigit + digit));
+      if (i > 0 && i % 3 == 0) {
+        output.append(groupingSeparator);
+      }
+    }
+  }
+
+  private void appendFraction(int thousandths, StringBuilder output) {
+    if (thousandths == 0) {
+      return;
+    }
+    output.append(decimalSeparator);
+    output.append((char) (zeroDigit + thousandths / 100));
+    int hundredthsAndThousandths = thousandths % 100;
+    if (hundredthsAndThousandths != 0) {
+      output.append((char) (zeroDigit + hundredthsAndThousandths / 10));
+      int lastDigit = hundredthsAndThousandths % 10;
+      if (lastDigit != 0) {
+        output.append((char) (zeroDigit + lastDigit));
+      }
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package com.pervasivecode.utils.measure;
+
+import javax.measure.Unit;
+
+/**
+ * Instances receive notifications about the work done by formatters and prefix selectors, so that
+ * callers can measure which formatters are used most heavily, how long they take, which prefixes
+ * they choose, and how often they fall back to a slower code path.
+ * <p>
+ * Formatters and selectors have no listener unless one is explicitly attached (see
+ * {@link ScalingFormatter#withListener(FormattingListener)}), and do no instrumentation work at all
+ * when they have no listener. Listeners are called synchronously on the formatting thread, possibly
+ * by many threads at once, so implementations must be thread-safe and should be inexpensive.
+ * <p>
+ * Every method has an empty default implementation, so implementations only need to override the
+ * methods for the notifications that they are interested in.
+ */
+public interface FormattingListener {
+
+  /**
+   * A code path that is correct but considerably more expensive than the usual one.
+   */
+  public enum SlowPath {
+    /**
+     * A {@link ScalingFormatter} chose a prefix using a {@link QuantityPrefixSelector} that is not
+     * a {@link PrimitivePrefixSelector}, which requires constructing intermediate
+     * {@code Quantity} objects.
+     */
+    QUANTITY_PREFIX_SELECTION,
+
+    /**
+     * A {@link ScalingFormatter} had no precomputed label for a prefixed unit, so it had to format
+     * the unit's symbol.
+     */
+    UNIT_SYMBOL_FORMATTING,
+
+    /**
+     * A value whose numeric type is not a primitive wrapper, such as a
+     * {@link java.math.BigDecimal BigDecimal}, had to be converted to a {@code double}.
+     */
+    NON_PRIMITIVE_VALUE,
+
+    /**
+     * A {@link ScalingDurationFormatter} could not convert a quantity to a whole number of
+     * nanoseconds using integer arithmetic, so it converted the value via floating-point seconds.
+     */
+    FLOATING_POINT_DURATION
+  }
+
+  /**
+   * One or more values were formatted.
+   *
+   * @param formatter The formatter that formatted the values.
+   * @param valueCount The number of values formatted by a single call to the formatter, which is
+   *        greater than one when a batch of values is formatted at once.
+   * @param elapsedNanos The amount of time that the formatter spent formatting the values.
+   */
+  public default void formatted(Object formatter, int valueCount, long elapsedNanos) {}
+
+  /**
+   * A prefix was chosen for a value.
+   *
+   * @param source The formatter or prefix selector that chose the prefix.
+   * @param prefixedUnit The chosen unit, including its prefix (or the base unit, if no prefix was
+   *        appropriate).
+   */
+  public default void prefixSelected(Object source, Unit<?> prefixedUnit) {}
+
+  /**
+   * A slow code path was taken.
+   *
+   * @param source The formatter or prefix selector that took the slow path.
+   * @param slowPath The slow path that was taken.
+   */
+  public default void slowPathTaken(Object source, SlowPath slowPath) {}
+}
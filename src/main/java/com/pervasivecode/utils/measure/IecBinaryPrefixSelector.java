@@ -1,9 +1,11 @@
 package com.pervasivecode.utils.measure;
 
-import java.math.BigDecimal;
+import static com.google.common.base.Preconditions.checkNotNull;
+import javax.annotation.Nullable;
 import javax.measure.Quantity;
 import javax.measure.Unit;
 import tec.uom.lib.common.BinaryPrefix;
+import tec.uom.se.quantity.Quantities;
 
 /**
  * Instances select an appropriate IEC binary prefix for a given {@link Quantity} and return the
@@ -11,8 +13,57 @@ import tec.uom.lib.common.BinaryPrefix;
  * <p>
  * Examples: Given 4,096 bytes per second, return 4 kibibits per second. Given 1,048,576 mebibytes,
  * return 1 tebibyte.
+ * <p>
+ * The prefixed units for each base unit are created once and then reused, and the prefix for any
+ * value that fits in a {@code long} is computed from the position of its highest set bit.
+ * Conversions between units use converters that are resolved once and then cached. Instances are
+ * safe for use by multiple threads.
  */
-public class IecBinaryPrefixSelector implements QuantityPrefixSelector {
+public class IecBinaryPrefixSelector implements PrimitivePrefixSelector {
+  // Indexes into the array of prefixed units for a given base unit. Index i is the prefix for
+  // 1024^i, and index 0 is the unprefixed base unit.
+  static final int BASE_INDEX = 0;
+  static final int EXBI_INDEX = 6;
+  static final int ZEBI_INDEX = 7;
+  static final int YOBI_INDEX = 8;
+
+  // Powers of two are exactly representable as doubles, so these comparisons are exact.
+  private static final double YOBI_FACTOR = IecBinaryPrefixes.YOBI_FACTOR.doubleValue();
+  private static final double ZEBI_FACTOR = IecBinaryPrefixes.ZEBI_FACTOR.doubleValue();
+
+  // 1024^i for each prefix index i. Dividing by a power of two is exact, so scaling by these gives
+  // the same results as the prefixed unit converters in uom-se.
+  private static final double[] FACTORS = {1.0d, IecBinaryPrefixes.KIBI_FACTOR,
+      IecBinaryPrefixes.MEBI_FACTOR, IecBinaryPrefixes.GIBI_FACTOR, IecBinaryPrefixes.TEBI_FACTOR,
+      IecBinaryPrefixes.PEBI_FACTOR, IecBinaryPrefixes.EXBI_FACTOR, ZEBI_FACTOR, YOBI_FACTOR};
+
+  // 2^63, the smallest magnitude that is too large for a long.
+  private static final double LONG_RANGE_LIMIT = -(double) Long.MIN_VALUE;
+
+  private final PrefixedUnitCache prefixedUnits =
+      new PrefixedUnitCache(IecBinaryPrefixSelector::buildPrefixedUnits);
+
+  @Nullable
+  private final FormattingListener listener;
+
+  /**
+   * Create a selector.
+   */
+  public IecBinaryPrefixSelector() {
+    this.listener = null;
+  }
+
+  /**
+   * Create a selector that reports each prefix that it selects via
+   * {@link #selectBestPrefix(Quantity, Unit)} or {@link #selectBestPrefixedUnit(double, Unit)} to
+   * the specified listener. Prefixes selected via the primitive {@code prefixIndexFor} methods are
+   * not reported, since those are used by formatters that report prefixes themselves.
+   *
+   * @param listener The listener that will be notified about selected prefixes.
+   */
+  public IecBinaryPrefixSelector(FormattingListener listener) {
+    this.listener = checkNotNull(listener);
+  }
 
   /**
    * Apply an appropriate prefix from the IEC binary set of prefixes for a given measurement.
@@ -25,37 +76,140 @@ public class IecBinaryPrefixSelector implements QuantityPrefixSelector {
   @Override
   public <Q extends Quantity<Q>> Quantity<Q> selectBestPrefix(Quantity<Q> measure,
       Unit<Q> formatUnit) {
-    BigDecimal asBig = BigDecimal.valueOf(measure.getValue().doubleValue());
-    if (asBig.compareTo(IecBinaryPrefixes.YOBI_FACTOR) >= 0) {
-      return measure.to(BinaryPrefix.YOBI(formatUnit));
+    UnitConverterCache converters = UnitConverterCache.shared();
+    Number value = converters.convertValue(measure, formatUnit);
+    int prefixIndex;
+    if (NumberTypes.isIntegral(value)) {
+      prefixIndex = prefixIndex(value.longValue());
+    } else {
+      if (listener != null && !NumberTypes.isFloatingPoint(value)) {
+        listener.slowPathTaken(this, FormattingListener.SlowPath.NON_PRIMITIVE_VALUE);
+      }
+      prefixIndex = prefixIndex(value.doubleValue());
     }
-    if (asBig.compareTo(IecBinaryPrefixes.ZEBI_FACTOR) >= 0) {
-      return measure.to(BinaryPrefix.ZEBI(formatUnit));
+    Unit<Q> prefixedUnit = prefixedUnits.get(formatUnit)[prefixIndex];
+    if (listener != null) {
+      listener.prefixSelected(this, prefixedUnit);
     }
+    Number scaledValue = converters.getConverter(formatUnit, prefixedUnit).convert(value);
+    return Quantities.getQuantity(scaledValue, prefixedUnit);
+  }
 
-    long asLong = measure.getValue().longValue();
-    if (asLong >= IecBinaryPrefixes.EXBI_FACTOR) {
-      return measure.to(BinaryPrefix.EXBI(formatUnit));
-    }
-    if (asLong >= IecBinaryPrefixes.PEBI_FACTOR) {
-      return measure.to(BinaryPrefix.PEBI(formatUnit));
+  /**
+   * Determine the appropriate prefix from the IEC binary set of prefixes for a given value. The
+   * prefix is chosen based on the magnitude of the value, so negative values use the same prefix as
+   * the corresponding positive values.
+   *
+   * @param value A value to scale with a prefix, in units of {@code formatUnit}.
+   * @param formatUnit The base "ones" unit of the provided value.
+   * @return The unit, with an appropriate prefix from the IEC binary set of prefixes.
+   */
+  @Override
+  public <Q extends Quantity<Q>> Unit<Q> selectBestPrefixedUnit(double value,
+      Unit<Q> formatUnit) {
+    Unit<Q> prefixedUnit = prefixedUnits.get(formatUnit)[prefixIndex(value)];
+    if (listener != null) {
+      listener.prefixSelected(this, prefixedUnit);
     }
+    return prefixedUnit;
+  }
 
-    if (asLong >= IecBinaryPrefixes.TEBI_FACTOR) {
-      return measure.to(BinaryPrefix.TEBI(formatUnit));
+  /**
+   * Determine the appropriate prefix from the IEC binary set of prefixes for a given integer value.
+   * Since the largest {@code long} value is smaller than one zebi, the chosen prefix is always one
+   * of KIBI through EXBI, or no prefix at all.
+   *
+   * @param <Q> The kind of value represented by the value. Example:
+   *        {@link systems.uom.quantity.Information Information}
+   * @param value A value to scale with a prefix, in units of {@code formatUnit}.
+   * @param formatUnit The base "ones" unit of the provided value.
+   * @return The unit, with an appropriate prefix from the IEC binary set of prefixes.
+   */
+  public <Q extends Quantity<Q>> Unit<Q> selectBestPrefixedUnit(long value, Unit<Q> formatUnit) {
+    Unit<Q> prefixedUnit = prefixedUnits.get(formatUnit)[prefixIndex(value)];
+    if (listener != null) {
+      listener.prefixSelected(this, prefixedUnit);
     }
+    return prefixedUnit;
+  }
 
-    if (asLong >= IecBinaryPrefixes.GIBI_FACTOR) {
-      return measure.to(BinaryPrefix.GIBI(formatUnit));
-    }
+  @Override
+  public int prefixCount() {
+    return FACTORS.length;
+  }
 
-    if (asLong >= IecBinaryPrefixes.MEBI_FACTOR) {
-      return measure.to(BinaryPrefix.MEBI(formatUnit));
-    }
+  /**
+   * Determine the appropriate prefix from the IEC binary set of prefixes for a given value. Index 0
+   * is the unprefixed base unit, index 1 is the kibi prefix, and index 8 is the yobi prefix.
+   *
+   * @param value A value to scale with a prefix, in terms of the unprefixed base unit.
+   * @return The index of the prefix.
+   */
+  @Override
+  public int prefixIndexFor(double value) {
+    return prefixIndex(value);
+  }
+
+  /**
+   * Determine the appropriate prefix from the IEC binary set of prefixes for a given integer value.
+   * Unlike {@link #prefixIndexFor(double)}, this is exact even for values near a prefix boundary
+   * that are too large to be represented exactly as a {@code double}.
+   *
+   * @param value A value to scale with a prefix, in terms of the unprefixed base unit.
+   * @return The index of the prefix.
+   */
+  @Override
+  public int prefixIndexFor(long value) {
+    return prefixIndex(value);
+  }
+
+  @Override
+  public double scale(double value, int prefixIndex) {
+    return value / FACTORS[prefixIndex];
+  }
 
-    if (asLong >= IecBinaryPrefixes.KIBI_FACTOR) {
-      return measure.to(BinaryPrefix.KIBI(formatUnit));
+  @Override
+  public <Q extends Quantity<Q>> Unit<Q> prefixedUnit(Unit<Q> whole, int prefixIndex) {
+    return prefixedUnits.get(whole)[prefixIndex];
+  }
+
+  /**
+   * Find the index of the prefix that should be used for an integer value.
+   */
+  static int prefixIndex(long value) {
+    // The magnitude of Long.MIN_VALUE is not representable as a long, but its bit pattern is the
+    // same as that of the unsigned value 2^63, which is what numberOfLeadingZeros will see.
+    long magnitude = value < 0 ? -value : value;
+    int highestSetBit = 63 - Long.numberOfLeadingZeros(magnitude);
+    // Each prefix is 2^10 times the previous one. For 0, highestSetBit is -1, which also yields 0.
+    return highestSetBit / 10;
+  }
+
+  /**
+   * Find the index of the prefix that should be used for a value.
+   */
+  static int prefixIndex(double value) {
+    double magnitude = Math.abs(value);
+    if (Double.isNaN(magnitude) || Double.isInfinite(magnitude)) {
+      return BASE_INDEX;
+    }
+    if (magnitude < LONG_RANGE_LIMIT) {
+      // Truncation can't cross a prefix boundary, since the boundaries are all integers.
+      return prefixIndex((long) magnitude);
+    }
+    if (magnitude >= YOBI_FACTOR) {
+      return YOBI_INDEX;
     }
-    return measure.to(formatUnit);
+    if (magnitude >= ZEBI_FACTOR) {
+      return ZEBI_INDEX;
+    }
+    return EXBI_INDEX;
+  }
+
+  private static <Q extends Quantity<Q>> Unit<?>[] buildPrefixedUnits(Unit<Q> formatUnit) {
+    return new Unit<?>[] {formatUnit, BinaryPrefix.KIBI(formatUnit), BinaryPrefix.MEBI(formatUnit),
+        BinaryPrefix.GIBI(formatUnit), BinaryPrefix.TEBI(formatUnit), BinaryPrefix.PEBI(formatUnit),
+        BinaryPrefix.EXBI(formatUnit), BinaryPrefix.ZEBI(formatUnit),
+        BinaryPrefix.YOBI(formatUnit)};
   }
 }
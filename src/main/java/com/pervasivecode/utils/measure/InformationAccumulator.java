@@ -0,0 +1,164 @@
+package com.pervasivecode.utils.measure;
+
+import static systems.uom.unicode.CLDR.BIT;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import javax.measure.Quantity;
+import javax.measure.Unit;
+import javax.measure.UnitConverter;
+import systems.uom.quantity.Information;
+import tec.uom.se.quantity.Quantities;
+
+/**
+ * A running total of amounts of data expressed in any mix of units (such as bits, kilobytes and
+ * mebibytes), which any number of threads can add to concurrently.
+ * <p>
+ * Unlike summing with {@link Quantity#add(Quantity)}, adding an amount does not construct any
+ * objects: each amount is converted to bits using a conversion factor that is looked up once per
+ * unit, and added to a {@link LongAdder}, which spreads contention across multiple cells rather
+ * than having all threads update one shared value. Amounts that are a whole number of bits (which
+ * includes any whole number of bytes with an SI or IEC binary prefix) are totaled exactly. Other
+ * amounts are totaled separately, with a {@link DoubleAdder}.
+ * <p>
+ * The total can be retrieved as a {@link Quantity} at any time, and formatted with a
+ * {@link QuantityFormatter} such as {@link ScalingFormatters#dataAmountInIecBinaryBytesUs()}. The
+ * exact total wraps around if it exceeds {@link Long#MAX_VALUE} bits (one exbibyte).
+ */
+public final class InformationAccumulator {
+  // 2^53: every integer with a smaller magnitude can be represented exactly as a double.
+  private static final double MAX_EXACT_DOUBLE = 0x1.0p53;
+
+  private final LongAdder wholeBits;
+  private final DoubleAdder fractionalBits;
+
+  // The conversion to bits for each unit seen so far.
+  private final UnitConversionTable<Information, BitConversion> conversions;
+
+  /**
+   * The conversion from a particular unit to bits.
+   */
+  private static final class BitConversion {
+    private final UnitConverter toBits;
+    // The number of bits per unit, if it is a whole number and the conversion is a simple
+    // multiplication; otherwise 0.
+    private final long wholeBitsPerUnit;
+
+    BitConversion(Unit<Information> unit) {
+      this.toBits = UnitConverterCache.shared().getConverter(unit, BIT);
+      double bitsPerUnit = toBits.convert(1.0d);
+      boolean isWholeBits = toBits.isLinear() && bitsPerUnit >= 1.0d
+          && bitsPerUnit < MAX_EXACT_DOUBLE && bitsPerUnit == Math.rint(bitsPerUnit);
+      this.wholeBitsPerUnit = isWholeBits ? (long) bitsPerUnit : 0L;
+    }
+  }
+
+  /**
+   * Create an accumulator with a total of zero.
+   */
+  public InformationAccumulator() {
+    this.wholeBits = new LongAdder();
+    this.fractionalBits = new DoubleAdder();
+    this.conversions = new UnitConversionTable<>(BitConversion::new);
+  }
+
+  /**
+   * Add an amount of data to the total.
+   *
+   * @param amount The amount to add.
+   */
+  public void add(Quantity<Information> amount) {
+    Number value = amount.getValue();
+    if (NumberTypes.isIntegral(value)) {
+      add(value.longValue(), amount.getUnit());
+    } else {
+      add(value.doubleValue(), amount.getUnit());
+    }
+  }
+
+  /**
+   * Add an integral amount of data to the total.
+   *
+   * @param value The amount to add, in terms of {@code unit}.
+   * @param unit The unit in which the amount is expressed.
+   */
+  public void add(long value, Unit<Information> unit) {
+    BitConversion conversion = conversions.conversionFor(unit);
+    long bitsPerUnit = conversion.wholeBitsPerUnit;
+    if (bitsPerUnit != 0L) {
+      long maxValue = Long.MAX_VALUE / bitsPerUnit;
+      if (value <= maxValue && value >= -maxValue) {
+        wholeBits.add(value * bitsPerUnit);
+        return;
+      }
+    }
+    addBits(conversion.toBits.convert((double) value));
+  }
+
+  /**
+   * Add an amount of data to the total.
+   *
+   * @param value The amount to add, in terms of {@code unit}. This must be finite.
+   * @param unit The unit in which the amount is expressed.
+   */
+  public void add(double value, Unit<Information> unit) {
+    addBits(conversions.conversionFor(unit).toBits.convert(value));
+  }
+
+  /**
+   * Get the total amount of data added so far. Amounts that are being added concurrently may or
+   * may not be included.
+   *
+   * @return The total, in bits. The value is a {@link Long} if every amount added so far was a
+   *         whole number of bits.
+   */
+  public Quantity<Information> getTotal() {
+    return toQuantity(wholeBits.sum(), fractionalBits.sum());
+  }
+
+  /**
+   * Get the total amount of data added so far, and reset the total to zero. Amounts that are being
+   * added concurrently will be included in either the returned total or the new one.
+   *
+   * @return The total, in bits. The value is a {@link Long} if every amount added since the last
+   *         reset was a whole number of bits.
+   */
+  public Quantity<Information> getTotalThenReset() {
+    return toQuantity(wholeBits.sumThenReset(), fractionalBits.sumThenReset());
+  }
+
+  /**
+   * Format the total amount of data added so far.
+   *
+   * @param formatter The formatter to use. Example:
+   *        {@link ScalingFormatters#dataAmountInIecBinaryBytesUs()}
+   * @return The formatted total.
+   */
+  public String format(QuantityFormatter<Information> formatter) {
+    return formatter.format(getTotal());
+  }
+
+  private void addBits(double bits) {
+    if (bits == Math.rint(bits) && Math.abs(bits) < MAX_EXACT_DOUBLE) {
+      wholeBits.add((long) bits);
+    } else if (Double.isFinite(bits)) {
+      fractionalBits.add(bits);
+    } else {
+      // Not using checkArgument, since that would box the value even when it is valid.
+      throw new IllegalArgumentException("amount must be finite, but was " + bits + " bits");
+    }
+  }
+
+  /**
+   * Get the number of units whose conversion factors are remembered.
+   */
+  int cachedUnitCount() {
+    return conversions.size();
+  }
+
+  private static Quantity<Information> toQuantity(long wholeBits, double fractionalBits) {
+    if (fractionalBits == 0.0d) {
+      return Quantities.getQuantity(wholeBits, BIT);
+    }
+    return Quantities.getQuantity(wholeBits + fractionalBits, BIT);
+  }
+}
@@ -0,0 +1,178 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.pervasivecode.utils.measure.InformationRateUnits.BYTES_PER_SECOND;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import javax.measure.Quantity;
+import com.google.common.base.Ticker;
+import systems.uom.quantity.InformationRate;
+import tec.uom.se.quantity.Quantities;
+
+/**
+ * A meter that measures the rate at which data is transferred, as exponentially-weighted moving
+ * averages over the last one, five, and fifteen seconds.
+ * <p>
+ * Any number of threads may {@link #record(long) record} transferred bytes concurrently. Recording
+ * only adds to a {@link LongAdder}, so it does not block and scales well under contention. The
+ * moving averages are brought up to date lazily, by whichever thread first notices that a tick
+ * interval has elapsed, so an idle meter costs nothing.
+ * <p>
+ * Rates are returned as {@code Quantity}&lt;{@code InformationRate}&gt; values in
+ * {@link InformationRateUnits#BYTES_PER_SECOND}, which can be formatted directly by formatters such
+ * as {@link ScalingFormatters#dataRateInSiBitsPerSecondUs()}.
+ */
+public final class InformationRateMeter {
+  private static final long TICK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  private static final double TICK_INTERVAL_SECONDS =
+      TICK_INTERVAL_NANOS / (double) TimeUnit.SECONDS.toNanos(1);
+
+  private static final double ONE_SECOND_DECAY = decayPerTick(1);
+  private static final double FIVE_SECOND_DECAY = decayPerTick(5);
+  private static final double FIFTEEN_SECOND_DECAY = decayPerTick(15);
+
+  private final Ticker ticker;
+  private final LongAdder totalBytes;
+  private final AtomicReference<Averages> averages;
+
+  /**
+   * The state of the moving averages as of a particular tick. Instances are immutable, so that a
+   * thread can advance the averages by replacing the whole state with a compare-and-set.
+   */
+  private static final class Averages {
+    private final long tickNanos;
+    // The total byte count that has already been accounted for in the averages.
+    private final long countedBytes;
+    // Whether any tick has happened yet. Until then, the rates are meaningless.
+    private final boolean isInitialized;
+    private final double oneSecondRate;
+    private final double fiveSecondRate;
+    private final double fifteenSecondRate;
+
+    Averages(long tickNanos, long countedBytes, boolean isInitialized, double oneSecondRate,
+        double fiveSecondRate, double fifteenSecondRate) {
+      this.tickNanos = tickNanos;
+      this.countedBytes = countedBytes;
+      this.isInitialized = isInitialized;
+      this.oneSecondRate = oneSecondRate;
+      this.fiveSecondRate = fiveSecondRate;
+      this.fifteenSecondRate = fifteenSecondRate;
+    }
+
+    /**
+     * Compute the averages after {@code numTicks} more ticks, given the total byte count as of the
+     * last of those ticks. All of the newly counted bytes are attributed to the first of the ticks,
+     * and the rest of the ticks are treated as idle. (This is accurate because {@link #record}
+     * advances the averages before adding to the total, so any bytes not yet counted arrived
+     * before the first of the ticks.)
+     */
+    Averages advance(long numTicks, long totalBytes) {
+      double instantRate = (totalBytes - countedBytes) / TICK_INTERVAL_SECONDS;
+      long numIdleTicks = numTicks - 1;
+      return new Averages(tickNanos + numTicks * TICK_INTERVAL_NANOS, totalBytes, true,
+          advance(oneSecondRate, instantRate, ONE_SECOND_DECAY, numIdleTicks),
+          advance(fiveSecondRate, instantRate, FIVE_SECOND_DECAY, numIdleTicks),
+          advance(fifteenSecondRate, instantRate, FIFTEEN_SECOND_DECAY, numIdleTicks));
+    }
+
+    private double advance(double rate, double instantRate, double decay, long numIdleTicks) {
+      double updatedRate = isInitialized ? instantRate + decay * (rate - instantRate) : instantRate;
+      if (numIdleTicks == 0) {
+        return updatedRate;
+      }
+      return updatedRate * Math.pow(decay, numIdleTicks);
+    }
+  }
+
+  /**
+   * Create a meter that measures time using {@link System#nanoTime()}.
+   */
+  public InformationRateMeter() {
+    this(Ticker.systemTicker());
+  }
+
+  InformationRateMeter(Ticker ticker) {
+    this.ticker = checkNotNull(ticker);
+    this.totalBytes = new LongAdder();
+    this.averages = new AtomicReference<>(new Averages(ticker.read(), 0L, false, 0, 0, 0));
+  }
+
+  /**
+   * Record that a number of bytes were transferred.
+   *
+   * @param numBytes The number of bytes.
+   */
+  public void record(long numBytes) {
+    checkArgument(numBytes >= 0, "numBytes must not be negative, but was %s", numBytes);
+    // Catch up on any ticks that have elapsed before adding the bytes, so that they are attributed
+    // to the tick in which they actually arrived, rather than to the first tick after the last
+    // update (which may have been long ago, and would then be decayed by the whole idle gap). This
+    // also keeps the averages current while data is flowing, so readers rarely have to catch up.
+    currentAverages();
+    totalBytes.add(numBytes);
+  }
+
+  /**
+   * Get the total number of bytes recorded by this meter.
+   *
+   * @return The total number of bytes.
+   */
+  public long getTotalBytes() {
+    return totalBytes.sum();
+  }
+
+  /**
+   * Get the exponentially-weighted moving average rate over the last second.
+   *
+   * @return The rate, in {@link InformationRateUnits#BYTES_PER_SECOND}.
+   */
+  public Quantity<InformationRate> getOneSecondRate() {
+    return Quantities.getQuantity(currentAverages().oneSecondRate, BYTES_PER_SECOND);
+  }
+
+  /**
+   * Get the exponentially-weighted moving average rate over the last five seconds.
+   *
+   * @return The rate, in {@link InformationRateUnits#BYTES_PER_SECOND}.
+   */
+  public Quantity<InformationRate> getFiveSecondRate() {
+    return Quantities.getQuantity(currentAverages().fiveSecondRate, BYTES_PER_SECOND);
+  }
+
+  /**
+   * Get the exponentially-weighted moving average rate over the last fifteen seconds.
+   *
+   * @return The rate, in {@link InformationRateUnits#BYTES_PER_SECOND}.
+   */
+  public Quantity<InformationRate> getFifteenSecondRate() {
+    return Quantities.getQuantity(currentAverages().fifteenSecondRate, BYTES_PER_SECOND);
+  }
+
+  /**
+   * Get the averages as of the most recent tick, advancing them first if one or more tick
+   * intervals have elapsed since they were last updated.
+   */
+  private Averages currentAverages() {
+    long now = ticker.read();
+    while (true) {
+      Averages current = averages.get();
+      long numTicks = (now - current.tickNanos) / TICK_INTERVAL_NANOS;
+      if (numTicks <= 0) {
+        return current;
+      }
+      // Bytes recorded concurrently with this sum might not be included, but they are not lost:
+      // since countedBytes is taken from the same sum, they will be counted in the next tick.
+      Averages next = current.advance(numTicks, totalBytes.sum());
+      if (averages.compareAndSet(current, next)) {
+        return next;
+      }
+      // Another thread advanced the averages first, so start over from its result.
+    }
+  }
+
+  private static double decayPerTick(int windowSeconds) {
+    return Math.exp(-TICK_INTERVAL_SECONDS / windowSeconds);
+  }
+}
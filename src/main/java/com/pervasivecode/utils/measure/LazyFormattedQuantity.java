@@ -0,0 +1,79 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import javax.measure.Quantity;
+
+/**
+ * A quantity paired with the formatter that will format it, which formats the quantity only when
+ * it is actually rendered via {@link #toString()} or {@link #formatTo(StringBuilder)}.
+ * <p>
+ * This is intended for use as an argument to a log statement, such as
+ * {@code logger.debug("Received {}", formatter.lazy(size))}, so that the cost of selecting a prefix
+ * and formatting the number is only paid when the log statement is enabled. The quantity is
+ * formatted each time it is rendered.
+ * <p>
+ * Instances obtained from {@link QuantityFormatter#lazy(Quantity)} are never modified after they
+ * are created. Instances obtained from a {@link LazyFormattedQuantityPool} are reused by later
+ * calls on the same thread, and must be rendered before then. In both cases the quantity is held
+ * in a non-final field (so that pooled instances can be reused), so an instance is not immutable
+ * in the sense of the Java memory model: an instance that is rendered by a different thread than
+ * the one that created it must be handed to that thread through a synchronizing mechanism, such
+ * as the concurrent queue of an asynchronous logger.
+ *
+ * @param <Q> The kind of Quantity that this object formats. Example:
+ *        {@link systems.uom.quantity.Information Information}
+ */
+public final class LazyFormattedQuantity<Q extends Quantity<Q>> {
+  private final QuantityFormatter<Q> formatter;
+  private Quantity<Q> quantity;
+
+  LazyFormattedQuantity(QuantityFormatter<Q> formatter, Quantity<Q> quantity) {
+    this.formatter = checkNotNull(formatter);
+    this.quantity = checkNotNull(quantity);
+  }
+
+  /**
+   * Replace the quantity, so that a pooled instance can be reused.
+   */
+  void setQuantity(Quantity<Q> quantity) {
+    this.quantity = checkNotNull(quantity);
+  }
+
+  /**
+   * Get the quantity that will be formatted.
+   *
+   * @return The quantity.
+   */
+  public Quantity<Q> getQuantity() {
+    return quantity;
+  }
+
+  /**
+   * Append the formatted quantity to the specified buffer. Loggers that render their arguments
+   * into a reusable buffer can call this instead of {@link #toString()}, so that formatters which
+   * write their output incrementally (such as a {@link ScalingFormatter} with a
+   * {@link FastDecimalRenderer}) do not build an intermediate String.
+   *
+   * @param buffer The buffer to which the formatted quantity will be appended.
+   */
+  public void formatTo(StringBuilder buffer) {
+    try {
+      formatter.formatTo(quantity, buffer);
+    } catch (IOException ioe) {
+      // StringBuilder.append does not throw IOException, so this cannot happen.
+      throw new UncheckedIOException(ioe);
+    }
+  }
+
+  /**
+   * Format the quantity.
+   *
+   * @return The formatted representation of the quantity.
+   */
+  @Override
+  public String toString() {
+    return formatter.format(quantity);
+  }
+}
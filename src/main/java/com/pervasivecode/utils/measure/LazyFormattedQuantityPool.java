@@ -0,0 +1,85 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import javax.measure.Quantity;
+
+/**
+ * A source of {@link LazyFormattedQuantity} instances that recycles them, for use with
+ * garbage-free loggers.
+ * <p>
+ * Each thread gets its own small ring of instances, which are handed out in turn by
+ * {@link #lazy(Quantity)}, so a single log statement can have several lazily formatted arguments.
+ * Once a thread's ring is full, each call reuses the instance handed out longest ago, so callers
+ * must finish rendering an instance (or discard it) before the same thread makes that many more
+ * calls. This is the case with loggers that render their arguments before returning, but not with
+ * asynchronous loggers that hold on to the arguments themselves until later.
+ *
+ * @param <Q> The kind of Quantity that this object formats. Example:
+ *        {@link systems.uom.quantity.Information Information}
+ */
+public final class LazyFormattedQuantityPool<Q extends Quantity<Q>> {
+  static final int DEFAULT_INSTANCES_PER_THREAD = 8;
+
+  private final QuantityFormatter<Q> formatter;
+  private final int instancesPerThread;
+  private final ThreadLocal<Ring<Q>> rings;
+
+  /**
+   * The instances handed out to one thread, and the index of the next one to hand out.
+   */
+  private static final class Ring<Q extends Quantity<Q>> {
+    private final LazyFormattedQuantity<Q>[] instances;
+    private int nextIndex;
+
+    @SuppressWarnings("unchecked")
+    Ring(int size) {
+      this.instances = (LazyFormattedQuantity<Q>[]) new LazyFormattedQuantity<?>[size];
+      this.nextIndex = 0;
+    }
+  }
+
+  /**
+   * Create a pool of {@value #DEFAULT_INSTANCES_PER_THREAD} instances per thread.
+   *
+   * @param formatter The formatter that will format the quantities.
+   */
+  public LazyFormattedQuantityPool(QuantityFormatter<Q> formatter) {
+    this(formatter, DEFAULT_INSTANCES_PER_THREAD);
+  }
+
+  /**
+   * Create a pool with the specified number of instances per thread.
+   *
+   * @param formatter The formatter that will format the quantities.
+   * @param instancesPerThread The number of calls to {@link #lazy(Quantity)} that a thread can make
+   *        before the first instance handed out to it is reused.
+   */
+  public LazyFormattedQuantityPool(QuantityFormatter<Q> formatter, int instancesPerThread) {
+    checkArgument(instancesPerThread > 0, "instancesPerThread must be positive, but was %s",
+        instancesPerThread);
+    this.formatter = checkNotNull(formatter);
+    this.instancesPerThread = instancesPerThread;
+    this.rings = ThreadLocal.withInitial(() -> new Ring<>(this.instancesPerThread));
+  }
+
+  /**
+   * Get a recycled instance that will format the specified quantity when it is rendered.
+   *
+   * @param quantity The quantity to format.
+   * @return An instance that this thread will reuse after {@code instancesPerThread} more calls.
+   */
+  public LazyFormattedQuantity<Q> lazy(Quantity<Q> quantity) {
+    Ring<Q> ring = rings.get();
+    int index = ring.nextIndex;
+    ring.nextIndex = (index + 1 == instancesPerThread) ? 0 : index + 1;
+    LazyFormattedQuantity<Q> instance = ring.instances[index];
+    if (instance == null) {
+      instance = new LazyFormattedQuantity<>(formatter, quantity);
+      ring.instances[index] = instance;
+    } else {
+      instance.setQuantity(quantity);
+    }
+    return instance;
+  }
+}
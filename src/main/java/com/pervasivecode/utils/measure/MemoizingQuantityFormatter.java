@@ -0,0 +1,166 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import javax.measure.Quantity;
+import javax.measure.Unit;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import tec.uom.se.quantity.Quantities;
+
+/**
+ * A QuantityFormatter that remembers the formatted representation of recently formatted values, so
+ * that formatting a value that was already formatted recently is just a cache lookup.
+ * <p>
+ * This is worthwhile when the same few values are formatted over and over, such as fixed buffer
+ * sizes, configured limits, or zero. The cache is thread-safe and holds at most a fixed number of
+ * entries, evicting the least recently used ones, so formatting an unbounded variety of values
+ * costs memory proportional only to the maximum size.
+ * <p>
+ * Values are cached by their exact numeric value and by the identity of the
+ * {@link CanonicalUnitCache canonical instance} of their unit (see {@link UnitConverterCache} for
+ * why units are compared by identity), so quantities whose units are equal but distinct instances,
+ * such as those created with an inline {@code MetricPrefix.KILO(BYTE)}, share cache entries.
+ * Values whose numeric type is not a primitive wrapper, such as {@link java.math.BigDecimal}, are
+ * passed straight through to the underlying formatter, since they cannot be keyed exactly by a
+ * primitive value.
+ *
+ * @param <Q> The kind of Quantity that this object can format. Example:
+ *        {@link systems.uom.quantity.Information Information}
+ */
+public final class MemoizingQuantityFormatter<Q extends Quantity<Q>>
+    implements QuantityFormatter<Q> {
+  private final QuantityFormatter<Q> formatter;
+  private final LoadingCache<ValueKey<Q>, String> formattedValues;
+
+  /**
+   * The exact numeric value and the identity of the unit of a quantity.
+   */
+  private static final class ValueKey<Q extends Quantity<Q>> {
+    // Either the value of an integral quantity, or the bits of a floating-point value.
+    private final long valueBits;
+    private final boolean isIntegral;
+    private final Unit<Q> unit;
+    private final int hashCode;
+
+    ValueKey(long valueBits, boolean isIntegral, Unit<Q> unit) {
+      this.valueBits = valueBits;
+      this.isIntegral = isIntegral;
+      this.unit = unit;
+      this.hashCode = 31 * Long.hashCode(valueBits) + System.identityHashCode(unit)
+          + (isIntegral ? 1 : 0);
+    }
+
+    Quantity<Q> toQuantity() {
+      if (isIntegral) {
+        return Quantities.getQuantity(valueBits, unit);
+      }
+      return Quantities.getQuantity(Double.longBitsToDouble(valueBits), unit);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof ValueKey)) {
+        return false;
+      }
+      ValueKey<?> otherKey = (ValueKey<?>) other;
+      return valueBits == otherKey.valueBits && isIntegral == otherKey.isIntegral
+          && unit == otherKey.unit;
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  /**
+   * Wrap a formatter with a cache of its output.
+   *
+   * @param formatter The formatter whose output should be cached. This must always produce the
+   *        same output for the same value.
+   * @param maximumSize The maximum number of formatted values to keep.
+   */
+  public MemoizingQuantityFormatter(QuantityFormatter<Q> formatter, long maximumSize) {
+    checkArgument(maximumSize > 0, "maximumSize must be positive, but was %s", maximumSize);
+    this.formatter = checkNotNull(formatter);
+    this.formattedValues = CacheBuilder.newBuilder() //
+        .maximumSize(maximumSize) //
+        .recordStats() //
+        .build(CacheLoader.from((key) -> formatter.format(key.toQuantity())));
+  }
+
+  @Override
+  public String format(Quantity<Q> quantity) {
+    Number value = quantity.getValue();
+    if (NumberTypes.isIntegral(value)) {
+      return lookUp(new ValueKey<>(value.longValue(), true, canonicalUnitOf(quantity)));
+    }
+    if (NumberTypes.isFloatingPoint(value)) {
+      return lookUp(new ValueKey<>(Double.doubleToLongBits(value.doubleValue()), false,
+          canonicalUnitOf(quantity)));
+    }
+    return formatter.format(quantity);
+  }
+
+  @Override
+  public void formatRange(double[] values, int fromIndex, int toIndex, Unit<Q> unit,
+      String[] output) {
+    Unit<Q> canonicalUnit = CanonicalUnitCache.shared().canonical(unit);
+    checkPositionIndexes(fromIndex, toIndex, values.length);
+    checkArgument(output.length >= toIndex,
+        "output array has length %s but the range ends at index %s", output.length, toIndex);
+    for (int i = fromIndex; i < toIndex; i++) {
+      output[i] =
+          lookUp(new ValueKey<>(Double.doubleToLongBits(values[i]), false, canonicalUnit));
+    }
+  }
+
+  /**
+   * Get the number of times a value was formatted using a cached representation.
+   *
+   * @return The number of cache hits.
+   */
+  public long getHitCount() {
+    return formattedValues.stats().hitCount();
+  }
+
+  /**
+   * Get the number of times a value had to be formatted by the underlying formatter because its
+   * representation was not cached. Values that cannot be cached are not counted.
+   *
+   * @return The number of cache misses.
+   */
+  public long getMissCount() {
+    return formattedValues.stats().missCount();
+  }
+
+  /**
+   * Get the approximate number of formatted values currently in the cache.
+   *
+   * @return The number of cached values.
+   */
+  public long getCachedValueCount() {
+    return formattedValues.size();
+  }
+
+  private static <Q extends Quantity<Q>> Unit<Q> canonicalUnitOf(Quantity<Q> quantity) {
+    return CanonicalUnitCache.shared().canonical(quantity.getUnit());
+  }
+
+  private String lookUp(ValueKey<Q> key) {
+    try {
+      return formattedValues.getUnchecked(key);
+    } catch (UncheckedExecutionException uee) {
+      Throwables.throwIfUnchecked(uee.getCause());
+      throw uee;
+    }
+  }
+}
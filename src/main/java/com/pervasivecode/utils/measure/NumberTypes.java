@@ -0,0 +1,32 @@
+package com.pervasivecode.utils.measure;
+
+/**
+ * Checks of the runtime type of a {@link Number}, used to choose between the exact integer code
+ * paths and the floating-point code paths of the prefix selectors and formatters in this package.
+ */
+final class NumberTypes {
+  private NumberTypes() {}
+
+  /**
+   * Determine whether a value is an integral primitive wrapper, whose exact value is available from
+   * {@link Number#longValue()}.
+   *
+   * @param value The value to check.
+   * @return True if the value is a Long, Integer, Short or Byte.
+   */
+  static boolean isIntegral(Number value) {
+    return value instanceof Long || value instanceof Integer || value instanceof Short
+        || value instanceof Byte;
+  }
+
+  /**
+   * Determine whether a value is a floating-point primitive wrapper, whose exact value is available
+   * from {@link Number#doubleValue()}.
+   *
+   * @param value The value to check.
+   * @return True if the value is a Double or Float.
+   */
+  static boolean isFloatingPoint(Number value) {
+    return value instanceof Double || value instanceof Float;
+  }
+}
@@ -0,0 +1,186 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.measure.Quantity;
+import javax.measure.Unit;
+import tec.uom.se.quantity.Quantities;
+
+/**
+ * A QuantityFormatter that formats large batches of values in parallel, using a
+ * {@link ForkJoinPool}.
+ * <p>
+ * Batches are split into chunks of at least 1,024 values, each of which is formatted by a single
+ * worker thread using the underlying formatter's
+ * {@link QuantityFormatter#formatRange(double[], int, int, Unit, String[]) formatRange} method, so
+ * per-batch optimizations of the underlying formatter still apply within each chunk. Chunk
+ * boundaries fall on multiples of 64 values, so that workers writing to adjacent chunks of the
+ * output array do not contend for the same cache lines except at the boundaries themselves.
+ * Smaller batches are formatted on the calling thread.
+ * <p>
+ * The underlying formatter must be safe for concurrent use by multiple threads, as
+ * {@link ScalingFormatter} is, since it is called from all of the pool's worker threads at once. No
+ * locks are involved in formatting.
+ *
+ * @param <Q> The kind of Quantity that this object can format. Example:
+ *        {@link systems.uom.quantity.Information Information}
+ */
+public final class ParallelQuantityFormatter<Q extends Quantity<Q>>
+    implements QuantityFormatter<Q> {
+  static final int MIN_CHUNK_SIZE = 1024;
+  // 64 references occupy 4 or 8 whole 64-byte cache lines, with or without compressed references.
+  static final int CHUNK_ALIGNMENT = 64;
+
+  private final QuantityFormatter<Q> formatter;
+  private final ForkJoinPool pool;
+
+  /**
+   * Wrap a formatter so that batches of values are formatted in parallel in the common
+   * {@link ForkJoinPool}.
+   *
+   * @param formatter The thread-safe formatter that will format each value.
+   */
+  public ParallelQuantityFormatter(QuantityFormatter<Q> formatter) {
+    this(formatter, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Wrap a formatter so that batches of values are formatted in parallel in the specified pool.
+   *
+   * @param formatter The thread-safe formatter that will format each value.
+   * @param pool The pool whose worker threads will format the values.
+   */
+  public ParallelQuantityFormatter(QuantityFormatter<Q> formatter, ForkJoinPool pool) {
+    this.formatter = checkNotNull(formatter);
+    this.pool = checkNotNull(pool);
+  }
+
+  @Override
+  public String format(Quantity<Q> quantity) {
+    return formatter.format(quantity);
+  }
+
+  @Override
+  public <A extends Appendable> A formatTo(Quantity<Q> quantity, A output) throws IOException {
+    return formatter.formatTo(quantity, output);
+  }
+
+  @Override
+  public void formatRange(double[] values, int fromIndex, int toIndex, Unit<Q> unit,
+      String[] output) {
+    checkNotNull(unit);
+    checkPositionIndexes(fromIndex, toIndex, values.length);
+    checkArgument(output.length >= toIndex,
+        "output array has length %s but the range ends at index %s", output.length, toIndex);
+    run(fromIndex, toIndex, (chunkFromIndex, chunkToIndex) -> formatter.formatRange(values,
+        chunkFromIndex, chunkToIndex, unit, output));
+  }
+
+  /**
+   * Format many integer values that are all expressed in terms of the same unit, storing the
+   * formatted representation of {@code values[i]} in {@code output[i]}.
+   * <p>
+   * Each value is formatted as an integral {@link Quantity}, so formatters that treat integers
+   * exactly (such as a ScalingFormatter using IEC binary prefixes) do so even for values too large
+   * to be represented exactly as a {@code double}.
+   *
+   * @param values The numeric values that should be formatted.
+   * @param unit The unit in which all of the values are expressed.
+   * @param output The array in which to store the formatted representations. This must be at least
+   *        as long as {@code values}.
+   */
+  public void formatAll(long[] values, Unit<Q> unit, String[] output) {
+    checkNotNull(values);
+    checkNotNull(unit);
+    checkArgument(output.length >= values.length,
+        "output array has length %s but values array has length %s", output.length, values.length);
+    run(0, values.length, (chunkFromIndex, chunkToIndex) -> {
+      for (int i = chunkFromIndex; i < chunkToIndex; i++) {
+        output[i] = formatter.format(Quantities.getQuantity(values[i], unit));
+      }
+    });
+  }
+
+  /**
+   * Format every quantity in a stream, in parallel in this formatter's pool.
+   *
+   * @param quantities The quantities that should be formatted.
+   * @return The formatted representations, in the encounter order of {@code quantities}.
+   */
+  public List<String> formatAll(Stream<? extends Quantity<Q>> quantities) {
+    checkNotNull(quantities);
+    // A parallel stream runs its tasks in the pool of the thread that starts the terminal
+    // operation, so starting it from a task in this.pool keeps the work in that pool.
+    return pool.submit(() -> quantities.parallel() //
+        .map(formatter::format) //
+        .collect(Collectors.toList())) //
+        .join();
+  }
+
+  private void run(int fromIndex, int toIndex, ChunkFormatter chunkFormatter) {
+    if (toIndex - fromIndex <= MIN_CHUNK_SIZE) {
+      // Too small to be worth handing off to the pool.
+      chunkFormatter.formatChunk(fromIndex, toIndex);
+    } else {
+      pool.invoke(new ChunkTask(chunkFormatter, fromIndex, toIndex));
+    }
+  }
+
+  /**
+   * Formats the values in one chunk of a batch.
+   */
+  @FunctionalInterface
+  private interface ChunkFormatter {
+    void formatChunk(int chunkFromIndex, int chunkToIndex);
+  }
+
+  /**
+   * A task that recursively splits a range of indexes into aligned chunks, and formats each chunk.
+   */
+  private static final class ChunkTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final transient ChunkFormatter chunkFormatter;
+    private final int fromIndex;
+    private final int toIndex;
+
+    ChunkTask(ChunkFormatter chunkFormatter, int fromIndex, int toIndex) {
+      this.chunkFormatter = chunkFormatter;
+      this.fromIndex = fromIndex;
+      this.toIndex = toIndex;
+    }
+
+    @Override
+    protected void compute() {
+      int splitIndex = splitIndex(fromIndex, toIndex);
+      if (splitIndex < 0) {
+        chunkFormatter.formatChunk(fromIndex, toIndex);
+      } else {
+        invokeAll(new ChunkTask(chunkFormatter, fromIndex, splitIndex),
+            new ChunkTask(chunkFormatter, splitIndex, toIndex));
+      }
+    }
+  }
+
+  /**
+   * Find the index at which to split a range into two aligned chunks of at least
+   * {@link #MIN_CHUNK_SIZE} values each.
+   *
+   * @return The split index, or -1 if the range should not be split.
+   */
+  static int splitIndex(int fromIndex, int toIndex) {
+    int midpoint = fromIndex + (toIndex - fromIndex) / 2;
+    int splitIndex = midpoint - (midpoint % CHUNK_ALIGNMENT);
+    if (splitIndex - fromIndex < MIN_CHUNK_SIZE || toIndex - splitIndex < MIN_CHUNK_SIZE) {
+      return -1;
+    }
+    return splitIndex;
+  }
+}
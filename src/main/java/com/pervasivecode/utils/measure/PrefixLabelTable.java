@@ -0,0 +1,56 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * An immutable table of the final label for each prefix of a {@link PrimitivePrefixSelector},
+ * indexed by prefix index, so that looking up the label for a scaled value is an array read rather
+ * than a {@link javax.measure.Unit Unit} lookup. Each label is also available pre-encoded as UTF-8,
+ * for callers that write bytes rather than characters.
+ */
+final class PrefixLabelTable {
+  private final String[] labels;
+  private final byte[][] encodedLabels;
+
+  /**
+   * Build a table from the label for each prefix index.
+   *
+   * @param labels The labels, where {@code labels[i]} is the label for prefix index {@code i}. This
+   *        array is copied.
+   */
+  PrefixLabelTable(String[] labels) {
+    this.labels = labels.clone();
+    this.encodedLabels = new byte[labels.length][];
+    for (int i = 0; i < labels.length; i++) {
+      this.encodedLabels[i] = checkNotNull(labels[i]).getBytes(UTF_8);
+    }
+  }
+
+  /**
+   * Get the label for a prefix.
+   *
+   * @param prefixIndex The index of the prefix.
+   * @return The label.
+   */
+  String label(int prefixIndex) {
+    return labels[prefixIndex];
+  }
+
+  /**
+   * Get the label for a prefix, encoded as UTF-8.
+   *
+   * @param prefixIndex The index of the prefix.
+   * @return The encoded label. Callers must not modify this array.
+   */
+  byte[] encodedLabel(int prefixIndex) {
+    return encodedLabels[prefixIndex];
+  }
+
+  /**
+   * Get the number of prefixes in this table.
+   */
+  int size() {
+    return labels.length;
+  }
+}
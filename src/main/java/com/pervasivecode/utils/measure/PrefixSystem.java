@@ -0,0 +1,32 @@
+package com.pervasivecode.utils.measure;
+
+/**
+ * Systems of scale prefixes that can be applied to a unit in order to present a value of any size in
+ * a human-friendly form.
+ */
+public enum PrefixSystem {
+  /**
+   * SI prefixes representing powers of 1000, such as kilo- (10^3), mega- (10^6) and milli- (10^-3).
+   */
+  SI(new SiPrefixSelector()),
+
+  /**
+   * IEC binary prefixes representing powers of 1024, such as kibi- (2^10) and mebi- (2^20).
+   */
+  IEC_BINARY(new IecBinaryPrefixSelector());
+
+  private final QuantityPrefixSelector prefixSelector;
+
+  private PrefixSystem(QuantityPrefixSelector prefixSelector) {
+    this.prefixSelector = prefixSelector;
+  }
+
+  /**
+   * Get a QuantityPrefixSelector that selects prefixes from this system of prefixes.
+   *
+   * @return A shared, thread-safe QuantityPrefixSelector instance.
+   */
+  public QuantityPrefixSelector prefixSelector() {
+    return prefixSelector;
+  }
+}
@@ -0,0 +1,70 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.measure.Quantity;
+import javax.measure.Unit;
+
+/**
+ * A thread-safe cache of the prefixed units that a prefix selector can choose from, so that the
+ * prefixed {@link Unit} instances for a given base unit are only constructed once.
+ */
+final class PrefixedUnitCache {
+
+  /**
+   * Instances construct the complete set of prefixed units for a given base unit, in the order in
+   * which the prefix selector will refer to them by index.
+   */
+  interface PrefixedUnitsBuilder {
+    <Q extends Quantity<Q>> Unit<?>[] buildPrefixedUnits(Unit<Q> baseUnit);
+  }
+
+  /**
+   * A base unit and its prefixed units.
+   */
+  private static final class Entry {
+    private final Unit<?> baseUnit;
+    private final Unit<?>[] prefixedUnits;
+
+    Entry(Unit<?> baseUnit, Unit<?>[] prefixedUnits) {
+      this.baseUnit = baseUnit;
+      this.prefixedUnits = prefixedUnits;
+    }
+  }
+
+  private final ConcurrentMap<Unit<?>, Unit<?>[]> prefixedUnitsByBaseUnit =
+      new ConcurrentHashMap<>();
+  private final PrefixedUnitsBuilder builder;
+
+  // The hashCode method of uom-se units is expensive, and callers usually ask for the same base
+  // unit instance over and over, so the most recently requested entry is checked by identity before
+  // falling back to the map.
+  private volatile Entry lastEntry;
+
+  PrefixedUnitCache(PrefixedUnitsBuilder builder) {
+    this.builder = checkNotNull(builder);
+  }
+
+  /**
+   * Get the prefixed units for the specified base unit, building them if necessary.
+   *
+   * @param baseUnit The unprefixed unit.
+   * @return The prefixed units. Callers must not modify this array.
+   */
+  @SuppressWarnings("unchecked")
+  <Q extends Quantity<Q>> Unit<Q>[] get(Unit<Q> baseUnit) {
+    Entry entry = this.lastEntry;
+    if (entry != null && entry.baseUnit == baseUnit) {
+      return (Unit<Q>[]) entry.prefixedUnits;
+    }
+
+    Unit<?>[] units = prefixedUnitsByBaseUnit.get(baseUnit);
+    if (units == null) {
+      units = prefixedUnitsByBaseUnit.computeIfAbsent(baseUnit,
+          (u) -> builder.buildPrefixedUnits(baseUnit));
+    }
+    this.lastEntry = new Entry(baseUnit, units);
+    return (Unit<Q>[]) units;
+  }
+}
@@ -0,0 +1,75 @@
+package com.pervasivecode.utils.measure;
+
+import javax.measure.Quantity;
+import javax.measure.Unit;
+import javax.measure.quantity.Mass;
+
+/**
+ * A {@link QuantityPrefixSelector} that can select a prefix for a primitive {@code double} or
+ * {@code long} value and scale the value to that prefix without allocating any objects.
+ * <p>
+ * Prefixes are identified by an index from 0 (inclusive) to {@link #prefixCount()} (exclusive),
+ * in order of increasing size, where one of the indexes represents the unprefixed base unit. This
+ * allows callers to look up per-prefix information, such as unit labels, in arrays rather than
+ * maps.
+ * <p>
+ * Example: for a value of 50,000 and a selector using SI prefixes, {@link #prefixIndexFor(double)}
+ * returns the index of the kilo prefix, and {@link #scale(double, int)} with that index returns 50.
+ */
+public interface PrimitivePrefixSelector extends QuantityPrefixSelector {
+
+  /**
+   * Get the number of prefixes that this selector can choose from, including the unprefixed base
+   * unit.
+   *
+   * @return The number of prefixes.
+   */
+  public int prefixCount();
+
+  /**
+   * Determine the most appropriate prefix for a value.
+   *
+   * @param value The value to scale with a unit prefix, in terms of the unprefixed base unit.
+   * @return The index of the prefix, from 0 (inclusive) to {@link #prefixCount()} (exclusive).
+   */
+  public int prefixIndexFor(double value);
+
+  /**
+   * Determine the most appropriate prefix for an integer value.
+   * <p>
+   * The default implementation delegates to {@link #prefixIndexFor(double)}. Implementations whose
+   * prefix boundaries could be misjudged due to the limited precision of a {@code double} should
+   * override this method.
+   *
+   * @param value The value to scale with a unit prefix, in terms of the unprefixed base unit.
+   * @return The index of the prefix, from 0 (inclusive) to {@link #prefixCount()} (exclusive).
+   */
+  public default int prefixIndexFor(long value) {
+    return prefixIndexFor((double) value);
+  }
+
+  /**
+   * Scale a value to the specified prefix.
+   *
+   * @param value The value to scale, in terms of the unprefixed base unit.
+   * @param prefixIndex The index of the prefix to scale the value to.
+   * @return The value, in terms of the prefixed unit.
+   */
+  public double scale(double value, int prefixIndex);
+
+  /**
+   * Get the prefixed unit that corresponds to a prefix index.
+   *
+   * @param <Q> The kind of value represented by the unit. Example: {@link Mass}
+   * @param whole The base "ones" unit for the type of thing being represented.
+   * @param prefixIndex The index of the prefix.
+   * @return The base unit, with the specified prefix applied.
+   */
+  public <Q extends Quantity<Q>> Unit<Q> prefixedUnit(Unit<Q> whole, int prefixIndex);
+
+  @Override
+  public default <Q extends Quantity<Q>> Unit<Q> selectBestPrefixedUnit(double value,
+      Unit<Q> whole) {
+    return prefixedUnit(whole, prefixIndexFor(value));
+  }
+}
@@ -1,8 +1,14 @@
 package com.pervasivecode.utils.measure;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import java.io.IOException;
 import java.util.Locale;
 import javax.measure.Quantity;
+import javax.measure.Unit;
 import javax.measure.quantity.Length;
+import tec.uom.se.quantity.Quantities;
 
 /**
  * Instances can format a Quantity of a given type in a representation that makes sense for a given
@@ -26,4 +32,84 @@ public interface QuantityFormatter<Q extends Quantity<Q>> {
    * @return The formatted representation of the quantity.
    */
   public String format(Quantity<Q> quantity);
+
+  /**
+   * Format the specified quantity, appending the formatted representation to the specified
+   * Appendable (such as a {@link StringBuilder} or a {@link java.io.Writer Writer}).
+   * <p>
+   * The default implementation appends the result of {@link #format(Quantity)}. Implementations
+   * that can write their output incrementally should override this method, so that callers who are
+   * writing into their own buffers can avoid the cost of building an intermediate String.
+   *
+   * @param <A> The type of Appendable that the formatted representation will be appended to.
+   * @param quantity The quantity that should be formatted.
+   * @param output The Appendable to which the formatted representation will be appended.
+   * @return {@code output}, for call chaining.
+   * @throws IOException if {@code output} throws an IOException.
+   */
+  public default <A extends Appendable> A formatTo(Quantity<Q> quantity, A output)
+      throws IOException {
+    output.append(format(quantity));
+    return output;
+  }
+
+  /**
+   * Wrap the specified quantity in an object that formats it with this formatter only when it is
+   * rendered, for use as an argument to a log statement that may be disabled.
+   *
+   * @param quantity The quantity that should be formatted.
+   * @return An object whose {@code toString()} method returns the formatted representation of the
+   *         quantity.
+   * @see LazyFormattedQuantityPool
+   */
+  public default LazyFormattedQuantity<Q> lazy(Quantity<Q> quantity) {
+    return new LazyFormattedQuantity<>(this, quantity);
+  }
+
+  /**
+   * Format many values that are all expressed in terms of the same unit, storing the formatted
+   * representation of {@code values[i]} in {@code output[i]}.
+   * <p>
+   * The default implementation delegates to
+   * {@link #formatRange(double[], int, int, Unit, String[])} for the whole array.
+   *
+   * @param values The numeric values that should be formatted.
+   * @param unit The unit in which all of the values are expressed.
+   * @param output The array in which to store the formatted representations. This must be at least
+   *        as long as {@code values}.
+   */
+  public default void formatAll(double[] values, Unit<Q> unit, String[] output) {
+    checkNotNull(values);
+    checkArgument(output.length >= values.length,
+        "output array has length %s but values array has length %s", output.length, values.length);
+    formatRange(values, 0, values.length, unit, output);
+  }
+
+  /**
+   * Format the values in a range of an array that are all expressed in terms of the same unit,
+   * storing the formatted representation of {@code values[i]} in {@code output[i]} for each index
+   * {@code i} from {@code fromIndex} (inclusive) to {@code toIndex} (exclusive). Other elements of
+   * {@code output} are not modified.
+   * <p>
+   * The default implementation formats each value individually via {@link #format(Quantity)}.
+   * Implementations that can share work across all of the values in a batch should override this
+   * method.
+   *
+   * @param values The numeric values that should be formatted.
+   * @param fromIndex The index of the first value to format.
+   * @param toIndex The index after the last value to format.
+   * @param unit The unit in which all of the values are expressed.
+   * @param output The array in which to store the formatted representations. This must be at least
+   *        {@code toIndex} elements long.
+   */
+  public default void formatRange(double[] values, int fromIndex, int toIndex, Unit<Q> unit,
+      String[] output) {
+    checkNotNull(unit);
+    checkPositionIndexes(fromIndex, toIndex, values.length);
+    checkArgument(output.length >= toIndex,
+        "output array has length %s but the range ends at index %s", output.length, toIndex);
+    for (int i = fromIndex; i < toIndex; i++) {
+      output[i] = format(Quantities.getQuantity(values[i], unit));
+    }
+  }
 }
@@ -0,0 +1,310 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.pervasivecode.utils.measure.InformationRateUnits.BITS_PER_SECOND;
+import static systems.uom.unicode.CLDR.BYTE;
+import static tec.uom.se.unit.MetricPrefix.NANO;
+import static tec.uom.se.unit.Units.SECOND;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.measure.Quantity;
+import javax.measure.Unit;
+import javax.measure.UnitConverter;
+import javax.measure.quantity.Time;
+import systems.uom.quantity.Information;
+import systems.uom.quantity.InformationRate;
+import tec.uom.se.quantity.Quantities;
+
+/**
+ * A concurrent, fixed-size histogram of quantities, for summarizing distributions such as request
+ * latencies or payload sizes as percentiles rather than as individual values.
+ * <p>
+ * Values are counted in buckets whose boundaries are aligned to a {@link PrefixSystem}: each range
+ * from one prefix to the next (such as 1 KiB to 1 MiB, or 1 &micro;s to 1 ms) is divided into the
+ * same number of buckets, spaced geometrically, so every bucket is the same size relative to the
+ * values in it. Values below the smallest prefix (including zero) are counted in a single underflow
+ * bucket, and values at or above the largest prefix in a single overflow bucket. The exact maximum
+ * value is tracked separately.
+ * <p>
+ * Recording a value does not allocate and is lock-free: it finds the value's bucket with a binary
+ * search of the precomputed bucket boundaries, and increments the bucket's count with a single
+ * atomic add. Only a new maximum value requires a compare-and-set loop, which retries only while
+ * other threads are concurrently raising the maximum. Recording is therefore not strictly
+ * wait-free, since a thread can in theory keep losing that race, but some thread always makes
+ * progress.
+ * <p>
+ * Recording a {@link Quantity} converts it to the histogram's unit. A unit that was seen before
+ * (or one equal to it) is converted without any locking and without writing to a volatile field.
+ * The first time a unit is seen, its conversion is looked up in the shared
+ * {@link UnitConverterCache}, which may briefly lock.
+ * <p>
+ * Percentiles are reported as the lower boundary of the bucket containing the value at that rank,
+ * so they understate the true value by less than the width of one bucket, and values that fall
+ * exactly on a prefix boundary (such as 1 KiB) are reported exactly. They can be formatted with
+ * any {@link QuantityFormatter}, such as a {@link ScalingFormatter} or a
+ * {@link ScalingDurationFormatter}.
+ *
+ * @param <Q> The kind of Quantity that this histogram counts. Example: {@link Information}
+ */
+public final class QuantityHistogram<Q extends Quantity<Q>> {
+  static final int DEFAULT_BUCKETS_PER_PREFIX = 256;
+
+  private final Unit<Q> unit;
+  // The lower boundary of every bucket except the underflow bucket, in ascending order. The
+  // underflow bucket has index 0, so the bucket that starts at bucketLowerBounds[i] has index i+1.
+  private final double[] bucketLowerBounds;
+  private final AtomicLongArray counts;
+  // The raw bits of the largest value recorded. Since values are never negative, the raw bits of
+  // two values compare in the same order as the values themselves.
+  private final AtomicLong maxValueBits;
+  // The conversions from the units of recorded quantities to this histogram's unit.
+  private final UnitConversionTable<Q, UnitConverter> conversions;
+
+  /**
+   * Create a histogram of values expressed in the specified unit.
+   *
+   * @param unit The unit in which recorded values are expressed, and in which percentiles will be
+   *        reported.
+   * @param prefixSystem The system of prefixes whose factors should be used as bucket boundaries.
+   * @param minPrefixPower The power of the prefix system's factor (1000 or 1024) at which the
+   *        smallest regular bucket starts. Example: -3 (nano-) for the SI prefix system.
+   * @param maxPrefixPower The power of the prefix system's factor at which the overflow bucket
+   *        starts. Example: 6 (exbi-) for the IEC binary prefix system.
+   * @param bucketsPerPrefix The number of buckets between each power of the prefix system's factor
+   *        and the next. More buckets give more precise percentiles, at the cost of more memory.
+   */
+  public QuantityHistogram(Unit<Q> unit, PrefixSystem prefixSystem, int minPrefixPower,
+      int maxPrefixPower, int bucketsPerPrefix) {
+    this.unit = checkNotNull(unit);
+    checkNotNull(prefixSystem);
+    int lowestPower = (prefixSystem == PrefixSystem.SI) ? -8 : 0;
+    checkArgument(minPrefixPower >= lowestPower && maxPrefixPower <= 8,
+        "Prefix powers must be between %s and 8, but were %s and %s", lowestPower, minPrefixPower,
+        maxPrefixPower);
+    checkArgument(minPrefixPower < maxPrefixPower,
+        "minPrefixPower (%s) must be less than maxPrefixPower (%s)", minPrefixPower,
+        maxPrefixPower);
+    checkArgument(bucketsPerPrefix > 0, "bucketsPerPrefix must be positive, but was %s",
+        bucketsPerPrefix);
+
+    int numPrefixRanges = maxPrefixPower - minPrefixPower;
+    this.bucketLowerBounds = new double[numPrefixRanges * bucketsPerPrefix + 1];
+    double factor = prefixFactor(prefixSystem, 1);
+    for (int range = 0; range < numPrefixRanges; range++) {
+      double prefixValue = prefixFactor(prefixSystem, minPrefixPower + range);
+      int firstBucket = range * bucketsPerPrefix;
+      bucketLowerBounds[firstBucket] = prefixValue;
+      for (int i = 1; i < bucketsPerPrefix; i++) {
+        bucketLowerBounds[firstBucket + i] =
+            prefixValue * Math.pow(factor, i / (double) bucketsPerPrefix);
+      }
+    }
+    // The lower bound of the overflow bucket.
+    bucketLowerBounds[bucketLowerBounds.length - 1] = prefixFactor(prefixSystem, maxPrefixPower);
+
+    this.counts = new AtomicLongArray(bucketLowerBounds.length + 1);
+    this.maxValueBits = new AtomicLong(Double.doubleToRawLongBits(0.0d));
+    this.conversions = new UnitConversionTable<>(
+        quantityUnit -> UnitConverterCache.shared().getConverter(quantityUnit, unit));
+  }
+
+  /**
+   * Create a histogram for amounts of data from 1 byte to 1 exbibyte, with buckets aligned to IEC
+   * binary prefixes.
+   *
+   * @return The histogram.
+   */
+  public static QuantityHistogram<Information> forInformation() {
+    return new QuantityHistogram<>(BYTE, PrefixSystem.IEC_BINARY, 0, 6,
+        DEFAULT_BUCKETS_PER_PREFIX);
+  }
+
+  /**
+   * Create a histogram for data rates from 1 bit per second to 1 petabit per second, with buckets
+   * aligned to SI prefixes.
+   *
+   * @return The histogram.
+   */
+  public static QuantityHistogram<InformationRate> forInformationRate() {
+    return new QuantityHistogram<>(BITS_PER_SECOND, PrefixSystem.SI, 0, 5,
+        DEFAULT_BUCKETS_PER_PREFIX);
+  }
+
+  /**
+   * Create a histogram for amounts of time from 1 nanosecond to 1 megasecond (about 11.6 days),
+   * with buckets aligned to SI prefixes.
+   *
+   * @return The histogram, which counts values in nanoseconds.
+   */
+  public static QuantityHistogram<Time> forTime() {
+    return new QuantityHistogram<>(NANO(SECOND), PrefixSystem.SI, 0, 5,
+        DEFAULT_BUCKETS_PER_PREFIX);
+  }
+
+  /**
+   * Get the unit in which this histogram counts values.
+   *
+   * @return The unit.
+   */
+  public Unit<Q> getUnit() {
+    return unit;
+  }
+
+  /**
+   * Record a value expressed in this histogram's unit.
+   *
+   * @param value The value, which must not be negative.
+   */
+  public void record(double value) {
+    if (!(value >= 0.0d)) {
+      // Not using checkArgument, since that would box the value even when it is valid.
+      throw new IllegalArgumentException("value must not be negative, but was " + value);
+    }
+    counts.incrementAndGet(bucketIndex(value));
+
+    long valueBits = Double.doubleToRawLongBits(value + 0.0d); // Turn -0.0 into 0.0.
+    long currentMaxBits = maxValueBits.get();
+    while (valueBits > currentMaxBits && !maxValueBits.compareAndSet(currentMaxBits, valueBits)) {
+      currentMaxBits = maxValueBits.get();
+    }
+  }
+
+  /**
+   * Record a quantity, converting it to this histogram's unit if necessary.
+   *
+   * @param quantity The quantity, which must not be negative.
+   */
+  public void record(Quantity<Q> quantity) {
+    UnitConverter converter = conversions.conversionFor(quantity.getUnit());
+    record(converter.convert(quantity.getValue().doubleValue()));
+  }
+
+  /**
+   * Get the number of values recorded by this histogram.
+   *
+   * @return The number of values.
+   */
+  public long getTotalCount() {
+    long totalCount = 0;
+    for (int i = 0; i < counts.length(); i++) {
+      totalCount += counts.get(i);
+    }
+    return totalCount;
+  }
+
+  /**
+   * Get the largest value recorded by this histogram.
+   *
+   * @return The maximum value, or zero if no values have been recorded.
+   */
+  public Quantity<Q> getMax() {
+    return Quantities.getQuantity(maxValue(), unit);
+  }
+
+  /**
+   * Get the value at or below which the specified percentage of the recorded values fall.
+   *
+   * @param percentile The percentile, from 0 to 100. Example: 99.9
+   * @return The value at the percentile, or zero if no values have been recorded.
+   */
+  public Quantity<Q> getValueAtPercentile(double percentile) {
+    checkArgument(percentile >= 0 && percentile <= 100,
+        "percentile must be between 0 and 100, but was %s", percentile);
+    long[] snapshot = snapshotCounts();
+    return Quantities.getQuantity(valueAtPercentile(snapshot, maxValue(), percentile), unit);
+  }
+
+  /**
+   * Format the median, 99th percentile and maximum values, as of a single snapshot of the
+   * histogram.
+   *
+   * @param formatter The formatter to use for each value.
+   * @return The formatted summary. Example: "p50: 1.5 KiB, p99: 12 MiB, max: 15.25 MiB"
+   */
+  public String formatSummary(QuantityFormatter<Q> formatter) {
+    checkNotNull(formatter);
+    long[] snapshot = snapshotCounts();
+    double maxValue = maxValue();
+    return new StringBuilder() //
+        .append("p50: ") //
+        .append(formatter.format(
+            Quantities.getQuantity(valueAtPercentile(snapshot, maxValue, 50), unit))) //
+        .append(", p99: ") //
+        .append(formatter.format(
+            Quantities.getQuantity(valueAtPercentile(snapshot, maxValue, 99), unit))) //
+        .append(", max: ") //
+        .append(formatter.format(Quantities.getQuantity(maxValue, unit))) //
+        .toString();
+  }
+
+  /**
+   * Get the index of the bucket containing the specified value.
+   */
+  int bucketIndex(double value) {
+    int searchResult = Arrays.binarySearch(bucketLowerBounds, value);
+    // An exact match is the index of the bucket's lower bound; otherwise the search result encodes
+    // the index at which the value would be inserted, which is one past its bucket's lower bound.
+    return (searchResult >= 0) ? searchResult + 1 : -searchResult - 1;
+  }
+
+  /**
+   * Get the smallest value that can be counted in the specified bucket.
+   */
+  double bucketLowerBound(int bucketIndex) {
+    return (bucketIndex == 0) ? 0.0d : bucketLowerBounds[bucketIndex - 1];
+  }
+
+  /**
+   * Get the number of units whose conversions are remembered.
+   */
+  int cachedUnitCount() {
+    return conversions.size();
+  }
+
+  private double maxValue() {
+    return Double.longBitsToDouble(maxValueBits.get());
+  }
+
+  private long[] snapshotCounts() {
+    long[] snapshot = new long[counts.length()];
+    for (int i = 0; i < snapshot.length; i++) {
+      snapshot[i] = counts.get(i);
+    }
+    return snapshot;
+  }
+
+  private double valueAtPercentile(long[] snapshot, double maxValue, double percentile) {
+    long totalCount = 0;
+    for (long count : snapshot) {
+      totalCount += count;
+    }
+    if (totalCount == 0) {
+      return 0.0d;
+    }
+    long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0d * totalCount));
+    long cumulativeCount = 0;
+    for (int i = 0; i < snapshot.length; i++) {
+      cumulativeCount += snapshot[i];
+      if (cumulativeCount >= rank) {
+        // A concurrently recorded value can be counted before it is reflected in the maximum.
+        return Math.min(bucketLowerBound(i), maxValue);
+      }
+    }
+    return maxValue;
+  }
+
+  private static double prefixFactor(PrefixSystem prefixSystem, int power) {
+    BigDecimal factor;
+    if (prefixSystem == PrefixSystem.IEC_BINARY) {
+      factor = BigDecimal.valueOf(IecBinaryPrefixes.KIBI_FACTOR).pow(power);
+    } else if (power >= 0) {
+      factor = SiThousandPrefixes.KILO_FACTOR.pow(power);
+    } else {
+      factor = SiThousandPrefixes.MILLI_FACTOR.pow(-power);
+    }
+    return factor.doubleValue();
+  }
+}
@@ -0,0 +1,243 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static systems.uom.unicode.CLDR.BIT;
+import java.util.Map;
+import javax.measure.Quantity;
+import javax.measure.Unit;
+import com.google.common.collect.ImmutableMap;
+import systems.uom.quantity.Information;
+import systems.uom.quantity.InformationRate;
+import tec.uom.se.format.SimpleUnitFormat;
+import tec.uom.se.quantity.Quantities;
+
+/**
+ * Parser for scaled values in the form produced by a {@link ScalingFormatter}, such as "1.5 GiB",
+ * "200 Mbps" or "1,024 PiB", which turns them back into {@link Quantity} objects.
+ * <p>
+ * The numeric portion may have a leading minus or plus sign, US-style grouping separators (",")
+ * and a decimal point. Whitespace between the number and the unit label is optional. A value with
+ * no decimal point is returned as an integral ({@link Long}) quantity, so that it can be formatted
+ * exactly; other values are returned as {@link Double} quantities.
+ * <p>
+ * Unit labels are looked up in a hash table of the labels, directly from the input text, and
+ * numbers are parsed with integer arithmetic, so parsing typical values does not allocate anything
+ * other than the resulting {@link Quantity}. Instances are immutable and safe for use by multiple
+ * threads.
+ *
+ * @param <Q> The kind of Quantity that this object can parse. Example: {@link Information}
+ */
+public final class QuantityParser<Q extends Quantity<Q>> {
+  // Doubles can exactly represent every integer up to 2^53, and every power of ten up to 10^22, so
+  // dividing such an integer by such a power of ten gives a correctly rounded result.
+  private static final long MAX_EXACT_SIGNIFICAND = 1L << 53;
+  private static final double[] EXACT_POWERS_OF_TEN = new double[23];
+  static {
+    EXACT_POWERS_OF_TEN[0] = 1.0d;
+    for (int i = 1; i < EXACT_POWERS_OF_TEN.length; i++) {
+      EXACT_POWERS_OF_TEN[i] = EXACT_POWERS_OF_TEN[i - 1] * 10.0d;
+    }
+  }
+
+  private static final QuantityParser<Information> US_INFORMATION_PARSER =
+      new QuantityParser<>(ImmutableMap.<Unit<Information>, String>builder() //
+          .put(BIT, SimpleUnitFormat.getInstance().format(BIT)) //
+          .putAll(SimpleUnitLabelProviders.usInformationLabels()) //
+          .build());
+
+  private static final QuantityParser<InformationRate> US_INFORMATION_RATE_PARSER =
+      new QuantityParser<>(SimpleUnitLabelProviders.usInformationRateLabels());
+
+  // An open-addressing hash table of labels, using linear probing. The table is at most half full,
+  // so every probe sequence reaches an empty slot quickly.
+  private final String[] slotLabels;
+  private final Unit<Q>[] slotUnits;
+  private final int slotMask;
+
+  /**
+   * Set up a parser that recognizes the specified unit labels.
+   *
+   * @param unitLabels The label of each unit that the parser should recognize. Each label must be
+   *        unique.
+   */
+  @SuppressWarnings("unchecked")
+  public QuantityParser(Map<Unit<Q>, String> unitLabels) {
+    checkArgument(!unitLabels.isEmpty(), "At least one unit label is required.");
+    int numSlots = Integer.highestOneBit(unitLabels.size() * 4 - 1);
+    this.slotLabels = new String[numSlots];
+    this.slotUnits = (Unit<Q>[]) new Unit<?>[numSlots];
+    this.slotMask = numSlots - 1;
+    for (Map.Entry<Unit<Q>, String> entry : unitLabels.entrySet()) {
+      String label = checkNotNull(entry.getValue());
+      checkArgument(!label.isEmpty(), "The label of unit %s is empty.", entry.getKey());
+      int slot = label.hashCode() & slotMask;
+      while (slotLabels[slot] != null) {
+        checkArgument(!slotLabels[slot].equals(label), "Label '%s' is used by units %s and %s",
+            label, slotUnits[slot], entry.getKey());
+        slot = (slot + 1) & slotMask;
+      }
+      slotLabels[slot] = label;
+      slotUnits[slot] = checkNotNull(entry.getKey());
+    }
+  }
+
+  /**
+   * Get a parser for {@link Information} values with the labels provided by
+   * {@link SimpleUnitLabelProviders#getUsInformationLabeler()}, plus "bit" for unprefixed bits.
+   *
+   * @return The parser.
+   */
+  public static QuantityParser<Information> getUsInformationParser() {
+    return US_INFORMATION_PARSER;
+  }
+
+  /**
+   * Get a parser for {@link InformationRate} values with the labels provided by
+   * {@link SimpleUnitLabelProviders#getUsInformationRateLabeler()}.
+   *
+   * @return The parser.
+   */
+  public static QuantityParser<InformationRate> getUsInformationRateParser() {
+    return US_INFORMATION_RATE_PARSER;
+  }
+
+  /**
+   * Parse a scaled value, such as "1.5 GiB".
+   *
+   * @param text The text to parse. Leading and trailing whitespace is ignored.
+   * @return The parsed quantity, expressed in the unit whose label appears in {@code text}.
+   * @throws IllegalArgumentException if the text is not a number followed by a known unit label.
+   */
+  public Quantity<Q> parse(CharSequence text) {
+    int end = text.length();
+    while (end > 0 && Character.isWhitespace(text.charAt(end - 1))) {
+      end--;
+    }
+    int pos = 0;
+    while (pos < end && Character.isWhitespace(text.charAt(pos))) {
+      pos++;
+    }
+
+    boolean isNegative = false;
+    if (pos < end && (text.charAt(pos) == '-' || text.charAt(pos) == '+')) {
+      isNegative = text.charAt(pos) == '-';
+      pos++;
+    }
+
+    int numberStart = pos;
+    // The significand is accumulated as a negative number (as in Long.parseLong), since the range
+    // of negative longs extends one further than the range of positive longs.
+    long limit = isNegative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+    long negativeSignificand = 0;
+    int numFractionDigits = 0;
+    boolean hasDigits = false;
+    boolean hasDecimalPoint = false;
+    boolean isExact = true;
+    for (; pos < end; pos++) {
+      char c = text.charAt(pos);
+      if (c >= '0' && c <= '9') {
+        int digit = c - '0';
+        // Division rounds toward zero, so this is exactly the check that
+        // negativeSignificand * 10 - digit >= limit.
+        if (isExact && negativeSignificand >= (limit + digit) / 10) {
+          negativeSignificand = negativeSignificand * 10 - digit;
+          if (hasDecimalPoint) {
+            numFractionDigits++;
+          }
+        } else {
+          // Too many digits to accumulate exactly. Keep scanning, and parse the slow way below.
+          isExact = false;
+        }
+        hasDigits = true;
+      } else if (c == ',' && !hasDecimalPoint && hasDigits && isDigitGroupAt(text, pos + 1, end)) {
+        continue;
+      } else if (c == '.' && !hasDecimalPoint) {
+        hasDecimalPoint = true;
+      } else {
+        break;
+      }
+    }
+    int numberEnd = pos;
+    checkArgument(hasDigits, "No number found in '%s'", text);
+
+    while (pos < end && Character.isWhitespace(text.charAt(pos))) {
+      pos++;
+    }
+    Unit<Q> unit = unitForLabel(text, pos, end);
+    checkArgument(unit != null, "Unknown unit label in '%s'", text);
+
+    Number value;
+    if (isExact && !hasDecimalPoint) {
+      value = Long.valueOf(isNegative ? negativeSignificand : -negativeSignificand);
+    } else if (isExact && negativeSignificand >= -MAX_EXACT_SIGNIFICAND
+        && numFractionDigits < EXACT_POWERS_OF_TEN.length) {
+      double magnitude = -negativeSignificand / EXACT_POWERS_OF_TEN[numFractionDigits];
+      value = Double.valueOf(isNegative ? -magnitude : magnitude);
+    } else {
+      value = Double.valueOf(parseSlowly(text, numberStart, numberEnd, isNegative));
+    }
+    return Quantities.getQuantity(value, unit);
+  }
+
+  private Unit<Q> unitForLabel(CharSequence text, int start, int end) {
+    int length = end - start;
+    if (length == 0) {
+      return null;
+    }
+    // This is the same as String.hashCode, computed without constructing a String.
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + text.charAt(i);
+    }
+    for (int slot = hash & slotMask; slotLabels[slot] != null; slot = (slot + 1) & slotMask) {
+      if (regionEquals(slotLabels[slot], text, start, length)) {
+        return slotUnits[slot];
+      }
+    }
+    return null;
+  }
+
+  private static boolean regionEquals(String label, CharSequence text, int start, int length) {
+    if (label.length() != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (label.charAt(i) != text.charAt(start + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isDigitAt(CharSequence text, int pos, int end) {
+    return pos < end && text.charAt(pos) >= '0' && text.charAt(pos) <= '9';
+  }
+
+  /**
+   * Determine whether a group of exactly three digits starts at the specified position, as it must
+   * after a grouping separator.
+   */
+  private static boolean isDigitGroupAt(CharSequence text, int pos, int end) {
+    return isDigitAt(text, pos, end) && isDigitAt(text, pos + 1, end)
+        && isDigitAt(text, pos + 2, end) && !isDigitAt(text, pos + 3, end);
+  }
+
+  /**
+   * Parse a number that has too many significant digits to be converted exactly with integer
+   * arithmetic. This is rare, so it is acceptable to construct a String here.
+   */
+  private static double parseSlowly(CharSequence text, int start, int end, boolean isNegative) {
+    StringBuilder digits = new StringBuilder(end - start + 1);
+    if (isNegative) {
+      digits.append('-');
+    }
+    for (int i = start; i < end; i++) {
+      char c = text.charAt(i);
+      if (c != ',') {
+        digits.append(c);
+      }
+    }
+    return Double.parseDouble(digits.toString());
+  }
+}
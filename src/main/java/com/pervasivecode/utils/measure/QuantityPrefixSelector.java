@@ -3,6 +3,7 @@ package com.pervasivecode.utils.measure;
 import javax.measure.Quantity;
 import javax.measure.Unit;
 import javax.measure.quantity.Mass;
+import tec.uom.se.quantity.Quantities;
 
 /**
  * Instances can automatically determine the appropriate scale prefix (e.g. kilo or mega) that
@@ -26,4 +27,23 @@ public interface QuantityPrefixSelector {
    * @return The input value, transformed to a unit that includes the appropriate unit prefix.
    */
   public <Q extends Quantity<Q>> Quantity<Q> selectBestPrefix(Quantity<Q> measure, Unit<Q> whole);
+
+  /**
+   * Determine the most appropriate prefixed unit for a value that is already expressed in terms of
+   * the base "ones" unit, without requiring the caller to construct a {@link Quantity}.
+   * <p>
+   * The default implementation wraps the value in a {@link Quantity} and delegates to
+   * {@link #selectBestPrefix(Quantity, Unit)}. Implementations that can choose a prefix directly
+   * from the numeric value should override this method.
+   *
+   * @param <Q> The kind of value represented by the value. Example: {@link Mass}
+   * @param value The value to scale with a unit prefix, in units of {@code whole}.
+   * @param whole The base "ones" unit for the type of thing being represented.
+   * @return The unit, including the appropriate unit prefix, that should be used to present the
+   *         value.
+   */
+  public default <Q extends Quantity<Q>> Unit<Q> selectBestPrefixedUnit(double value,
+      Unit<Q> whole) {
+    return selectBestPrefix(Quantities.getQuantity(value, whole), whole).getUnit();
+  }
 }
@@ -0,0 +1,276 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.text.NumberFormat;
+import javax.annotation.Nullable;
+import javax.measure.Quantity;
+import javax.measure.Unit;
+import javax.measure.UnitConverter;
+
+/**
+ * Formatter for columns of values in tabular output, which presents every value in a column with
+ * the same prefix (such as "0.5 GiB", "12.25 GiB", "1,024 GiB") so that the values can be compared
+ * at a glance.
+ * <p>
+ * The prefix for a column is chosen once, by the prefix selector of a {@link ScalingFormatter},
+ * based on either the largest or the median magnitude in the column. The numeric portion of each
+ * value is then scaled with a single precomputed multiplier and rendered by the formatter's
+ * NumberFormat or FastDecimalRenderer, followed by the prefixed unit's label, so there is no
+ * per-value prefix selection or unit conversion.
+ * <p>
+ * Instances are safe for concurrent use by multiple threads.
+ *
+ * @param <Q> The type of measurement that the formatter is able to format. Example:
+ *        {@link systems.uom.quantity.Information Information}
+ */
+public final class ScalingColumnFormatter<Q extends Quantity<Q>> {
+  // 2^53: every integer with a smaller magnitude can be represented exactly as a double.
+  private static final double MAX_EXACT_DOUBLE = 0x1.0p53;
+
+  /**
+   * The value in a column that determines which prefix is used for the whole column.
+   */
+  public enum PrefixBasis {
+    /**
+     * Use the prefix of the value with the largest magnitude, so that no value in the column has
+     * more than three or four integer digits.
+     */
+    MAXIMUM,
+
+    /**
+     * Use the prefix of the value with the median magnitude, so that typical values in the column
+     * are presented the way they would be on their own.
+     */
+    MEDIAN
+  }
+
+  private final ScalingFormatter<Q> formatter;
+  private final PrefixBasis prefixBasis;
+
+  /**
+   * Set up a new instance that formats values the same way that the specified formatter formats
+   * them, except that every value in a column uses the same prefix.
+   *
+   * @param formatter The formatter whose prefix selector, number format, and unit labels should be
+   *        used.
+   * @param prefixBasis The value in each column that determines which prefix will be used.
+   */
+  public ScalingColumnFormatter(ScalingFormatter<Q> formatter, PrefixBasis prefixBasis) {
+    this.formatter = checkNotNull(formatter);
+    this.prefixBasis = checkNotNull(prefixBasis);
+  }
+
+  /**
+   * Format a column of values that are all expressed in terms of the same unit, storing the
+   * formatted representation of {@code values[i]} in {@code output[i]}.
+   *
+   * @param values The numeric values that should be formatted.
+   * @param unit The unit in which all of the values are expressed. This does not need to be the
+   *        base unit of the formatter.
+   * @param output The array in which to store the formatted representations. This must be at least
+   *        as long as {@code values}.
+   * @return The prefixed unit in which every value was presented, for use in a column heading.
+   */
+  public Unit<Q> formatColumn(double[] values, Unit<Q> unit, String[] output) {
+    checkArgument(output.length >= values.length,
+        "output array has length %s but values array has length %s", output.length, values.length);
+    ColumnScale scale = new ColumnScale(basisValue(values), unit);
+    NumberFormat threadNumberFormat = formatter.threadNumberFormat();
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < values.length; i++) {
+      sb.setLength(0);
+      formatter.appendNumber(scale.scale(values[i]), threadNumberFormat, sb);
+      sb.append(' ');
+      sb.append(scale.label);
+      output[i] = sb.toString();
+    }
+    return scale.prefixedUnit;
+  }
+
+  /**
+   * Format a column of integer values that are all expressed in terms of the same unit, storing the
+   * formatted representation of {@code values[i]} in {@code output[i]}.
+   * <p>
+   * When the chosen prefixed unit is a whole multiple of {@code unit} (or is {@code unit} itself),
+   * values are scaled with integer arithmetic and rendered exactly, even beyond 2<sup>53</sup>.
+   *
+   * @param values The numeric values that should be formatted.
+   * @param unit The unit in which all of the values are expressed. This does not need to be the
+   *        base unit of the formatter.
+   * @param output The array in which to store the formatted representations. This must be at least
+   *        as long as {@code values}.
+   * @return The prefixed unit in which every value was presented, for use in a column heading.
+   */
+  public Unit<Q> formatColumn(long[] values, Unit<Q> unit, String[] output) {
+    checkArgument(output.length >= values.length,
+        "output array has length %s but values array has length %s", output.length, values.length);
+    ColumnScale scale = new ColumnScale(basisValue(values), unit);
+    NumberFormat threadNumberFormat = formatter.threadNumberFormat();
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < values.length; i++) {
+      sb.setLength(0);
+      long value = values[i];
+      if (scale.isExactlyScalable(value)) {
+        formatter.appendNumber(value * scale.wholeMultiplier, threadNumberFormat, sb);
+      } else {
+        formatter.appendNumber(scale.scale(value), threadNumberFormat, sb);
+      }
+      sb.append(' ');
+      sb.append(scale.label);
+      output[i] = sb.toString();
+    }
+    return scale.prefixedUnit;
+  }
+
+  /**
+   * The prefixed unit chosen for a column, and the conversion from the column's unit to it.
+   */
+  private final class ColumnScale {
+    private final Unit<Q> prefixedUnit;
+    private final String label;
+    // The factor that converts a value from the column's unit to the prefixed unit, if the
+    // conversion is a simple multiplication. Otherwise, the converter is not null and is used.
+    private final double multiplier;
+    @Nullable
+    private final UnitConverter converter;
+    // The multiplier, if it is a whole number, so that integer values can be scaled exactly;
+    // otherwise 0.
+    private final long wholeMultiplier;
+    // The largest magnitude of an integer value that can be multiplied by wholeMultiplier without
+    // overflowing.
+    private final long maxExactValue;
+
+    /**
+     * Choose the prefixed unit for a column.
+     *
+     * @param basisValue The magnitude that determines the prefix, in terms of {@code unit}.
+     * @param unit The unit in which the values in the column are expressed.
+     */
+    ColumnScale(double basisValue, Unit<Q> unit) {
+      UnitConverterCache converters = UnitConverterCache.shared();
+      Unit<Q> baseUnit = formatter.baseUnit();
+      this.prefixedUnit = formatter.prefixedUnitFor(
+          converters.getConverter(checkNotNull(unit), baseUnit).convert(basisValue));
+      this.label = formatter.labelFor(prefixedUnit);
+
+      UnitConverter toPrefixedUnit = converters.getConverter(unit, prefixedUnit);
+      if (toPrefixedUnit.isLinear()) {
+        this.multiplier = toPrefixedUnit.convert(1.0d);
+        this.converter = null;
+      } else {
+        this.multiplier = Double.NaN;
+        this.converter = toPrefixedUnit;
+      }
+      boolean isWholeMultiplier = multiplier >= 1.0d && multiplier < MAX_EXACT_DOUBLE
+          && multiplier == Math.rint(multiplier);
+      this.wholeMultiplier = isWholeMultiplier ? (long) multiplier : 0L;
+      this.maxExactValue = isWholeMultiplier ? Long.MAX_VALUE / wholeMultiplier : -1L;
+    }
+
+    /**
+     * Determine whether an integer value can be scaled exactly, as {@code value * wholeMultiplier},
+     * so that it can be rendered without losing precision to a double.
+     */
+    boolean isExactlyScalable(long value) {
+      return wholeMultiplier == 1L || (value <= maxExactValue && value >= -maxExactValue);
+    }
+
+    double scale(double value) {
+      if (converter == null) {
+        return value * multiplier;
+      }
+      return converter.convert(value);
+    }
+  }
+
+  /**
+   * Find the magnitude that should determine the prefix of a column, ignoring any infinite or NaN
+   * values.
+   */
+  private double basisValue(double[] values) {
+    if (prefixBasis == PrefixBasis.MAXIMUM) {
+      double maximum = 0.0d;
+      for (double value : values) {
+        double magnitude = Math.abs(value);
+        if (magnitude > maximum && magnitude < Double.POSITIVE_INFINITY) {
+          maximum = magnitude;
+        }
+      }
+      return maximum;
+    }
+    double[] magnitudes = new double[values.length];
+    int numFiniteValues = 0;
+    for (double value : values) {
+      double magnitude = Math.abs(value);
+      if (magnitude < Double.POSITIVE_INFINITY) {
+        magnitudes[numFiniteValues++] = magnitude;
+      }
+    }
+    return median(magnitudes, numFiniteValues);
+  }
+
+  /**
+   * Find the magnitude that should determine the prefix of a column of integers.
+   */
+  private double basisValue(long[] values) {
+    if (prefixBasis == PrefixBasis.MAXIMUM) {
+      double maximum = 0.0d;
+      for (long value : values) {
+        maximum = Math.max(maximum, Math.abs((double) value));
+      }
+      return maximum;
+    }
+    double[] magnitudes = new double[values.length];
+    for (int i = 0; i < values.length; i++) {
+      magnitudes[i] = Math.abs((double) values[i]);
+    }
+    return median(magnitudes, magnitudes.length);
+  }
+
+  /**
+   * Find the median of the first {@code length} values in an array of finite magnitudes, which is
+   * reordered as a side effect. For an even number of values, the smaller of the two middle values
+   * is used.
+   * <p>
+   * This is a quickselect, which takes linear time on average, rather than a full sort.
+   */
+  static double median(double[] magnitudes, int length) {
+    if (length == 0) {
+      return 0.0d;
+    }
+    int rank = (length - 1) / 2;
+    int low = 0;
+    int high = length - 1;
+    while (low < high) {
+      double pivot = magnitudes[low + (high - low) / 2];
+      int i = low;
+      int j = high;
+      while (i <= j) {
+        while (magnitudes[i] < pivot) {
+          i++;
+        }
+        while (magnitudes[j] > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          double swap = magnitudes[i];
+          magnitudes[i] = magnitudes[j];
+          magnitudes[j] = swap;
+          i++;
+          j--;
+        }
+      }
+      // Now every value in [low, j] is <= pivot, every value in [i, high] is >= pivot, and any
+      // values in between are equal to the pivot.
+      if (rank <= j) {
+        high = j;
+      } else if (rank >= i) {
+        low = i;
+      } else {
+        return magnitudes[rank];
+      }
+    }
+    return magnitudes[rank];
+  }
+}
@@ -1,35 +1,156 @@
 package com.pervasivecode.utils.measure;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static tec.uom.se.unit.MetricPrefix.NANO;
 import static tec.uom.se.unit.Units.SECOND;
 import java.time.Duration;
 import java.util.Objects;
+import javax.annotation.Nullable;
 import javax.measure.Quantity;
+import javax.measure.Unit;
+import javax.measure.UnitConverter;
 import javax.measure.quantity.Time;
 import com.pervasivecode.utils.time.DurationFormatter;
-import tec.uom.se.quantity.Quantities;
 
 /**
  * Format a {@code Quantity}&lt;{@code Time}&gt; value using a {@link DurationFormatter}, for a
  * representation that uses common units of time rather than metric prefixes (ex. "1 day" rather
  * than "86.4 Ks").
+ * <p>
+ * Callers that already have an elapsed time as a number of nanoseconds or as a {@link Duration}
+ * should use {@link #format(long)} or {@link #format(Duration)}, which avoid unit conversion
+ * entirely.
  */
 public class ScalingDurationFormatter implements QuantityFormatter<Time> {
+  private static final Unit<Time> NANOSECOND = NANO(SECOND);
+  private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
   private final DurationFormatter formatter;
+  @Nullable
+  private final FormattingListener listener;
+
+  // The conversion for each unit of time seen so far, so that alternating between units (such as
+  // milliseconds and nanoseconds) does not recompute conversions.
+  private final UnitConversionTable<Time, TimeConversion> conversions;
 
   public ScalingDurationFormatter(DurationFormatter formatter) {
     this.formatter = Objects.requireNonNull(formatter);
+    this.listener = null;
+    this.conversions = new UnitConversionTable<>(TimeConversion::new);
+  }
+
+  /**
+   * Create a formatter that reports each value that it formats, and each time that it has to
+   * convert a value using floating-point arithmetic, to the specified listener.
+   *
+   * @param formatter The formatter that will format the durations.
+   * @param listener The listener that will be notified about formatting work.
+   */
+  public ScalingDurationFormatter(DurationFormatter formatter, FormattingListener listener) {
+    this.formatter = Objects.requireNonNull(formatter);
+    this.listener = Objects.requireNonNull(listener);
+    this.conversions = new UnitConversionTable<>(TimeConversion::new);
   }
 
+  /**
+   * The conversion from a particular unit of time to seconds, and (if the unit is a whole number of
+   * nanoseconds) the exact number of nanoseconds per unit.
+   */
+  private static final class TimeConversion {
+    private final UnitConverter toSeconds;
+    private final long nanosPerUnit;
+
+    TimeConversion(Unit<Time> unit) {
+      UnitConverterCache converters = UnitConverterCache.shared();
+      this.toSeconds = converters.getConverter(unit, SECOND);
+      double nanosPerUnit = converters.getConverter(unit, NANOSECOND).convert(1.0);
+      boolean isWholeNanos = nanosPerUnit >= 1.0 && nanosPerUnit < Long.MAX_VALUE
+          && nanosPerUnit == Math.rint(nanosPerUnit);
+      this.nanosPerUnit = isWholeNanos ? (long) nanosPerUnit : 0L;
+    }
+  }
+
+  /**
+   * Format an amount of time expressed as a Quantity.
+   * <p>
+   * A value that is not a whole number of nanoseconds, such as 2.7 ns, is rounded to the nearest
+   * nanosecond (3 ns, in this example). This also keeps floating-point error from turning a value
+   * such as 4.35 s into 4 s 349,999,999 ns.
+   *
+   * @param quantity The amount of time.
+   * @return The formatted amount of time.
+   * @throws IllegalArgumentException if the value of {@code quantity} is NaN or infinite.
+   */
   @Override
   public String format(Quantity<Time> quantity) {
-    long secondsPart = quantity.to(SECOND).getValue().longValue();
+    long startNanos = (listener != null) ? System.nanoTime() : 0L;
+    String formatted = formatter.format(toDuration(quantity));
+    if (listener != null) {
+      listener.formatted(this, 1, System.nanoTime() - startNanos);
+    }
+    return formatted;
+  }
 
-    Quantity<Time> justSecondsPart = Quantities.getQuantity(secondsPart, SECOND);
-    Quantity<Time> justNanosPart = quantity.to(NANO(SECOND)).subtract(justSecondsPart); 
-    
-    long nanosPart = justNanosPart.getValue().longValue();
+  private Duration toDuration(Quantity<Time> quantity) {
+    TimeConversion conversion = conversions.conversionFor(quantity.getUnit());
+
+    Number value = quantity.getValue();
+    if (conversion.nanosPerUnit != 0L && NumberTypes.isIntegral(value)) {
+      long wholeUnits = value.longValue();
+      long maxUnits = Long.MAX_VALUE / conversion.nanosPerUnit;
+      if (wholeUnits <= maxUnits && wholeUnits >= -maxUnits) {
+        return Duration.ofNanos(wholeUnits * conversion.nanosPerUnit);
+      }
+    }
+
+    if (listener != null) {
+      listener.slowPathTaken(this, FormattingListener.SlowPath.FLOATING_POINT_DURATION);
+    }
+
+    double seconds = conversion.toSeconds.convert(value.doubleValue());
+    checkArgument(!Double.isNaN(seconds) && !Double.isInfinite(seconds),
+        "quantity must have a finite value, but was %s", quantity);
+    long secondsPart = (long) seconds;
+    long nanosPart = Math.round((seconds - secondsPart) * NANOS_PER_SECOND);
+    return Duration.ofSeconds(secondsPart, nanosPart);
+  }
+
+  /**
+   * Get the number of units of time whose conversions are remembered.
+   */
+  int cachedUnitCount() {
+    return conversions.size();
+  }
+
+  /**
+   * Format an amount of time expressed as a number of nanoseconds, such as the difference between
+   * two values returned by {@link System#nanoTime()}.
+   *
+   * @param nanos The amount of time, in nanoseconds.
+   * @return The formatted amount of time.
+   */
+  public String format(long nanos) {
+    long startNanos = (listener != null) ? System.nanoTime() : 0L;
+    String formatted = formatter.format(Duration.ofNanos(nanos));
+    if (listener != null) {
+      listener.formatted(this, 1, System.nanoTime() - startNanos);
+    }
+    return formatted;
+  }
 
-    return formatter.format(Duration.ofSeconds(secondsPart, nanosPart));
+  /**
+   * Format an amount of time expressed as a Duration.
+   *
+   * @param duration The amount of time.
+   * @return The formatted amount of time.
+   */
+  public String format(Duration duration) {
+    Objects.requireNonNull(duration);
+    long startNanos = (listener != null) ? System.nanoTime() : 0L;
+    String formatted = formatter.format(duration);
+    if (listener != null) {
+      listener.formatted(this, 1, System.nanoTime() - startNanos);
+    }
+    return formatted;
   }
 }
@@ -1,10 +1,18 @@
 package com.pervasivecode.utils.measure;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import java.io.IOException;
 import java.text.NumberFormat;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
 import javax.measure.Quantity;
 import javax.measure.Unit;
+import javax.measure.UnitConverter;
 import javax.measure.format.UnitFormat;
+import com.google.common.collect.ImmutableMap;
 import tec.uom.lib.common.BinaryPrefix;
 import tec.uom.se.format.SimpleUnitFormat;
 import tec.uom.se.unit.MetricPrefix;
@@ -23,6 +31,19 @@ import tec.uom.se.unit.Units;
  * callers will need to provide an appropriately localized NumberFormat and UnitLabelProvider, as
  * well as a QuantityPrefixSelector capable of applying the caller's desired system of prefixes as
  * appropriate.
+ * <p>
+ * When the prefix selector is a {@link PrimitivePrefixSelector} (as the built-in SI and IEC binary
+ * selectors are), values are scaled using primitive arithmetic, and no intermediate
+ * {@link Quantity} objects are constructed.
+ * <p>
+ * Instances are safe for concurrent use by multiple threads without any external synchronization,
+ * so a single instance can be shared by all threads that need to format a given kind of value.
+ * Each thread formats numbers using its own copy of the {@link NumberFormat} provided at
+ * construction time, unless the formatter was constructed with a {@link FastDecimalRenderer}, which
+ * is itself thread-safe.
+ * <p>
+ * To measure how a formatter is used, attach a {@link FormattingListener} with
+ * {@link #withListener(FormattingListener)}.
  *
  * @param <Q> The type of measurement that the formatter is able to format. Example:
  *        {@link javax.measure.quantity.Mass Mass}
@@ -31,9 +52,28 @@ import tec.uom.se.unit.Units;
 public class ScalingFormatter<Q extends Quantity<Q>> implements QuantityFormatter<Q> {
 
   private final QuantityPrefixSelector prefixSelector;
+  // The same selector as prefixSelector, if it supports primitive values; otherwise null.
+  @Nullable
+  private final PrimitivePrefixSelector primitivePrefixSelector;
+  // The prefixed unit for each prefix index of primitivePrefixSelector, if it is not null.
+  @Nullable
+  private final Unit<Q>[] prefixedUnits;
+  // The label of each of the prefixedUnits, by prefix index, if prefixedUnits is not null.
+  @Nullable
+  private final PrefixLabelTable prefixLabels;
   private final Unit<Q> baseUnit;
-  private final NumberFormat numberFormat;
-  private final UnitFormat unitFormat;
+  // NumberFormat is not thread-safe, so each thread gets its own copy of the prototype. Exactly one
+  // of numberFormat and decimalRenderer is not null.
+  @Nullable
+  private final ThreadLocal<NumberFormat> numberFormat;
+  @Nullable
+  private final FastDecimalRenderer decimalRenderer;
+  // Labels for the base unit and every prefixed unit that the built-in prefix selectors can return.
+  private final ImmutableMap<Unit<Q>, String> unitLabels;
+  // Checked before doing any instrumentation work, so that formatters without a listener pay only
+  // for the null check.
+  @Nullable
+  private final FormattingListener listener;
 
   /**
    * Set up a ScalingFormatter with the specified scaling and formatting behavior.
@@ -43,14 +83,12 @@ public class ScalingFormatter<Q extends Quantity<Q>> implements QuantityFormatte
    * @param prefixSelector This decides which scale prefix is appropriate to use for any given value
    *        of any given magnitude.
    * @param numberFormat This constructs the correct String representation for the numeric portion
-   *        of the Quantity, after it has been scaled by the {@code prefixSelector}.
+   *        of the Quantity, after it has been scaled by the {@code prefixSelector}. This instance
+   *        is copied, so subsequent changes to it will not affect this formatter.
    */
   public ScalingFormatter(Unit<Q> baseInformationUnit, QuantityPrefixSelector prefixSelector,
       NumberFormat numberFormat) {
-    this.baseUnit = checkNotNull(baseInformationUnit);
-    this.prefixSelector = checkNotNull(prefixSelector);
-    this.numberFormat = checkNotNull(numberFormat);
-    this.unitFormat = SimpleUnitFormat.getInstance();
+    this(baseInformationUnit, prefixSelector, numberFormat, (unit) -> null);
   }
 
   /**
@@ -61,22 +99,94 @@ public class ScalingFormatter<Q extends Quantity<Q>> implements QuantityFormatte
    * @param prefixSelector This decides which scale prefix is appropriate to use for any given value
    *        of any given magnitude.
    * @param numberFormat This constructs the correct String representation for the numeric portion
-   *        of the Quantity, after it has been scaled by the {@code prefixSelector}.
+   *        of the Quantity, after it has been scaled by the {@code prefixSelector}. This instance
+   *        is copied, so subsequent changes to it will not affect this formatter.
    * @param unitLabelProvider Provider of additional unit+prefix labels for units and prefixes other
    *        than the base SI units and prefixes directly supported by {@link SimpleUnitFormat}.
    *        (Note that unit symbols for compound units are not correctly generated by
    *        {@link ProductUnit}, e.g. "m/s" for {@link Units#METRE METRE} divided by
-   *        {@link Units#SECOND SECOND}, so they must be explicitly provided here.)
+   *        {@link Units#SECOND SECOND}, so they must be explicitly provided here.) The labels are
+   *        looked up once, when this formatter is constructed, and are used only by this formatter.
    */
   public ScalingFormatter(Unit<Q> baseInformationUnit, QuantityPrefixSelector prefixSelector,
       NumberFormat numberFormat, UnitLabelProvider<Q> unitLabelProvider) {
-    this(baseInformationUnit, prefixSelector, numberFormat);
+    this(baseInformationUnit, prefixSelector, perThreadCopiesOf(checkNotNull(numberFormat)), null,
+        unitLabelProvider);
+  }
 
-    UnitFormatLabelSetter<Q> labelSetter =
-          new UnitFormatLabelSetter<Q>(unitLabelProvider, unitFormat);
-    labelSetter.setBaseUnitLabel(baseInformationUnit);
-    labelSetter.setSiUnitLabels(baseInformationUnit);
-    labelSetter.setIecBinaryUnitLabels(baseInformationUnit);
+  /**
+   * Set up a ScalingFormatter that renders the numeric portion of each value with a
+   * {@link FastDecimalRenderer} rather than a {@link NumberFormat}.
+   *
+   * @param baseInformationUnit The fundamental unit of this type of measurement, e.g.
+   *        {@link Units#OHM OHM}.
+   * @param prefixSelector This decides which scale prefix is appropriate to use for any given value
+   *        of any given magnitude.
+   * @param decimalRenderer This constructs the correct String representation for the numeric
+   *        portion of the Quantity, after it has been scaled by the {@code prefixSelector}.
+   * @param unitLabelProvider Provider of additional unit+prefix labels for units and prefixes other
+   *        than the base SI units and prefixes directly supported by {@link SimpleUnitFormat}.
+   * @see #ScalingFormatter(Unit, QuantityPrefixSelector, NumberFormat, UnitLabelProvider)
+   */
+  public ScalingFormatter(Unit<Q> baseInformationUnit, QuantityPrefixSelector prefixSelector,
+      FastDecimalRenderer decimalRenderer, UnitLabelProvider<Q> unitLabelProvider) {
+    this(baseInformationUnit, prefixSelector, null, checkNotNull(decimalRenderer),
+        unitLabelProvider);
+  }
+
+  private ScalingFormatter(Unit<Q> baseInformationUnit, QuantityPrefixSelector prefixSelector,
+      @Nullable ThreadLocal<NumberFormat> numberFormat,
+      @Nullable FastDecimalRenderer decimalRenderer, UnitLabelProvider<Q> unitLabelProvider) {
+    this.baseUnit = checkNotNull(baseInformationUnit);
+    this.prefixSelector = checkNotNull(prefixSelector);
+    this.numberFormat = numberFormat;
+    this.decimalRenderer = decimalRenderer;
+    this.listener = null;
+
+    UnitLabelTableBuilder<Q> labelTableBuilder = new UnitLabelTableBuilder<Q>(
+        checkNotNull(unitLabelProvider), SimpleUnitFormat.getInstance());
+    labelTableBuilder.addBaseUnitLabel(baseInformationUnit);
+    labelTableBuilder.addSiUnitLabels(baseInformationUnit);
+    labelTableBuilder.addIecBinaryUnitLabels(baseInformationUnit);
+    this.unitLabels = labelTableBuilder.build();
+
+    if (prefixSelector instanceof PrimitivePrefixSelector) {
+      this.primitivePrefixSelector = (PrimitivePrefixSelector) prefixSelector;
+      this.prefixedUnits = prefixedUnitsByIndex(primitivePrefixSelector, baseInformationUnit);
+      String[] labels = new String[prefixedUnits.length];
+      for (int i = 0; i < labels.length; i++) {
+        labels[i] = labelFor(prefixedUnits[i]);
+      }
+      this.prefixLabels = new PrefixLabelTable(labels);
+    } else {
+      this.primitivePrefixSelector = null;
+      this.prefixedUnits = null;
+      this.prefixLabels = null;
+    }
+  }
+
+  private ScalingFormatter(ScalingFormatter<Q> original, FormattingListener listener) {
+    this.baseUnit = original.baseUnit;
+    this.prefixSelector = original.prefixSelector;
+    this.primitivePrefixSelector = original.primitivePrefixSelector;
+    this.prefixedUnits = original.prefixedUnits;
+    this.prefixLabels = original.prefixLabels;
+    this.numberFormat = original.numberFormat;
+    this.decimalRenderer = original.decimalRenderer;
+    this.unitLabels = original.unitLabels;
+    this.listener = listener;
+  }
+
+  /**
+   * Get a formatter that formats values exactly like this one, but which also reports each value
+   * that it formats, the prefix chosen for it, and any slow paths taken while formatting it, to the
+   * specified listener. This formatter is not modified.
+   *
+   * @param listener The listener that will be notified about formatting work.
+   * @return The new formatter.
+   */
+  public ScalingFormatter<Q> withListener(FormattingListener listener) {
+    return new ScalingFormatter<>(this, checkNotNull(listener));
   }
 
   /**
@@ -87,64 +197,414 @@ public class ScalingFormatter<Q extends Quantity<Q>> implements QuantityFormatte
    */
   @Override
   public String format(Quantity<Q> measure) {
-    Quantity<Q> m = prefixSelector.selectBestPrefix(measure, baseUnit);
+    long startNanos = (listener != null) ? System.nanoTime() : 0L;
+    StringBuilder sb = new StringBuilder();
+    if (primitivePrefixSelector != null) {
+      Number value = UnitConverterCache.shared().convertValue(measure, baseUnit);
+      int prefixIndex = prefixIndexFor(value);
+      double scaledValue = primitivePrefixSelector.scale(value.doubleValue(), prefixIndex);
+      appendScaled(scaledValue, prefixLabels.label(prefixIndex), sb);
+      reportPrefix(prefixIndex);
+    } else {
+      Quantity<Q> m = selectBestPrefix(measure);
+      appendScaled(m.getValue().doubleValue(), labelFor(m.getUnit()), sb);
+    }
+    String formatted = sb.toString();
+    if (listener != null) {
+      listener.formatted(this, 1, System.nanoTime() - startNanos);
+    }
+    return formatted;
+  }
 
+  /**
+   * Scale and format a value, appending the formatted representation to the specified Appendable.
+   *
+   * @param measure The value to scale and format.
+   * @param output The Appendable to which the formatted representation will be appended.
+   * @return {@code output}, for call chaining.
+   * @throws IOException if {@code output} throws an IOException.
+   */
+  @Override
+  public <A extends Appendable> A formatTo(Quantity<Q> measure, A output) throws IOException {
+    checkNotNull(output);
+    long startNanos = (listener != null) ? System.nanoTime() : 0L;
+    double scaledValue;
+    String label;
+    if (primitivePrefixSelector != null) {
+      Number value = UnitConverterCache.shared().convertValue(measure, baseUnit);
+      int prefixIndex = prefixIndexFor(value);
+      scaledValue = primitivePrefixSelector.scale(value.doubleValue(), prefixIndex);
+      label = prefixLabels.label(prefixIndex);
+      reportPrefix(prefixIndex);
+    } else {
+      Quantity<Q> m = selectBestPrefix(measure);
+      scaledValue = m.getValue().doubleValue();
+      label = labelFor(m.getUnit());
+    }
+    if (output instanceof StringBuilder) {
+      // Render the number directly into the StringBuilder, without an intermediate String.
+      appendScaled(scaledValue, label, (StringBuilder) output);
+    } else {
+      output.append(formatNumber(scaledValue));
+      output.append(' ');
+      output.append(label);
+    }
+    if (listener != null) {
+      listener.formatted(this, 1, System.nanoTime() - startNanos);
+    }
+    return output;
+  }
+
+  /**
+   * Scale and format a value that is expressed in terms of this formatter's base unit.
+   * <p>
+   * This produces the same result as {@link #format(Quantity)} would for a {@link Quantity} of
+   * {@code value} base units, but without constructing any {@link Quantity} objects.
+   *
+   * @param value The value to scale and format, in terms of the base unit.
+   * @return The scaled and formatted String representation of {@code value}.
+   */
+  public String format(double value) {
     StringBuilder sb = new StringBuilder();
-    sb.append(this.numberFormat.format(m.getValue().doubleValue()));
-    sb.append(' ');
-    sb.append(this.unitFormat.format(m.getUnit()));
+    formatTo(value, sb);
     return sb.toString();
   }
 
   /**
-   * Populate a SimpleUnitFormat instance with labels that include prefixes from the SI and IEC
-   * Binary systems of prefixes.
+   * Scale and format a value that is expressed in terms of this formatter's base unit, appending
+   * the formatted representation to the specified StringBuilder.
+   * <p>
+   * This is useful for callers who are building up a larger String (such as a log line), since it
+   * avoids constructing an intermediate String and any {@link Quantity} objects.
+   *
+   * @param value The value to scale and format, in terms of the base unit.
+   * @param output The StringBuilder to which the formatted representation will be appended.
+   * @return {@code output}, for call chaining.
+   */
+  public StringBuilder formatTo(double value, StringBuilder output) {
+    checkNotNull(output);
+    long startNanos = (listener != null) ? System.nanoTime() : 0L;
+    if (primitivePrefixSelector != null) {
+      int prefixIndex = primitivePrefixSelector.prefixIndexFor(value);
+      appendScaled(primitivePrefixSelector.scale(value, prefixIndex),
+          prefixLabels.label(prefixIndex), output);
+      reportPrefix(prefixIndex);
+    } else {
+      Unit<Q> prefixedUnit = prefixedUnitFor(value);
+      appendScaled(scale(value, prefixedUnit), labelFor(prefixedUnit), output);
+      reportSelectedPrefix(prefixedUnit);
+    }
+    if (listener != null) {
+      listener.formatted(this, 1, System.nanoTime() - startNanos);
+    }
+    return output;
+  }
+
+  /**
+   * Scale and format the values in a range of an array that are all expressed in terms of the same
+   * unit, storing the formatted representation of {@code values[i]} in {@code output[i]}.
+   * <p>
+   * The conversion from {@code unit} to the base unit is resolved once for the whole batch, and
+   * the conversion factor and label for a given prefix are reused for as long as consecutive values
+   * use that prefix, so this is considerably less expensive than formatting each value separately.
+   *
+   * @param values The numeric values that should be formatted.
+   * @param fromIndex The index of the first value to format.
+   * @param toIndex The index after the last value to format.
+   * @param unit The unit in which all of the values are expressed. This does not need to be the
+   *        base unit of this formatter.
+   * @param output The array in which to store the formatted representations. This must be at least
+   *        {@code toIndex} elements long.
+   */
+  @Override
+  public void formatRange(double[] values, int fromIndex, int toIndex, Unit<Q> unit,
+      String[] output) {
+    checkPositionIndexes(fromIndex, toIndex, values.length);
+    checkArgument(output.length >= toIndex,
+        "output array has length %s but the range ends at index %s", output.length, toIndex);
+    long startNanos = (listener != null) ? System.nanoTime() : 0L;
+    UnitConverter toBaseUnit = UnitConverterCache.shared().getConverter(unit, baseUnit);
+    NumberFormat threadNumberFormat = threadNumberFormat();
+    StringBuilder sb = new StringBuilder();
+
+    if (primitivePrefixSelector != null) {
+      for (int i = fromIndex; i < toIndex; i++) {
+        double value = toBaseUnit.convert(values[i]);
+        int prefixIndex = primitivePrefixSelector.prefixIndexFor(value);
+        sb.setLength(0);
+        appendNumber(primitivePrefixSelector.scale(value, prefixIndex), threadNumberFormat, sb);
+        sb.append(' ');
+        sb.append(prefixLabels.label(prefixIndex));
+        output[i] = sb.toString();
+        reportPrefix(prefixIndex);
+      }
+      if (listener != null) {
+        listener.formatted(this, toIndex - fromIndex, System.nanoTime() - startNanos);
+      }
+      return;
+    }
+
+    Unit<Q> currentPrefixedUnit = null;
+    UnitConverter toCurrentPrefixedUnit = null;
+    String currentLabel = null;
+
+    for (int i = fromIndex; i < toIndex; i++) {
+      double value = toBaseUnit.convert(values[i]);
+      Unit<Q> prefixedUnit = prefixSelector.selectBestPrefixedUnit(value, baseUnit);
+      // The built-in prefix selectors return the same Unit instance for a given prefix every time.
+      if (prefixedUnit != currentPrefixedUnit) {
+        currentPrefixedUnit = prefixedUnit;
+        toCurrentPrefixedUnit = UnitConverterCache.shared().getConverter(baseUnit, prefixedUnit);
+        currentLabel = labelFor(prefixedUnit);
+      }
+
+      sb.setLength(0);
+      appendNumber(toCurrentPrefixedUnit.convert(value), threadNumberFormat, sb);
+      sb.append(' ');
+      sb.append(currentLabel);
+      output[i] = sb.toString();
+      reportSelectedPrefix(prefixedUnit);
+    }
+    if (listener != null) {
+      listener.formatted(this, toIndex - fromIndex, System.nanoTime() - startNanos);
+    }
+  }
+
+  /**
+   * Select the prefixed unit that should be used to present a value.
+   *
+   * @param value The value, in terms of the base unit.
+   * @return The appropriately-prefixed unit.
+   */
+  Unit<Q> prefixedUnitFor(double value) {
+    return prefixSelector.selectBestPrefixedUnit(value, baseUnit);
+  }
+
+  /**
+   * Convert a value from the base unit to the specified prefixed unit.
+   */
+  double scale(double value, Unit<Q> prefixedUnit) {
+    return UnitConverterCache.shared().getConverter(baseUnit, prefixedUnit).convert(value);
+  }
+
+  /**
+   * Format the numeric portion of an already-scaled value, using the calling thread's copy of this
+   * formatter's NumberFormat, or this formatter's FastDecimalRenderer.
+   */
+  String formatNumber(double scaledValue) {
+    if (decimalRenderer != null) {
+      return decimalRenderer.format(scaledValue);
+    }
+    return numberFormat.get().format(scaledValue);
+  }
+
+  /**
+   * Get the unprefixed unit that values are scaled from.
+   */
+  Unit<Q> baseUnit() {
+    return baseUnit;
+  }
+
+  /**
+   * Get the prefix selector, if it supports primitive values.
+   *
+   * @return The prefix selector, or null if it is not a {@link PrimitivePrefixSelector}.
+   */
+  @Nullable
+  PrimitivePrefixSelector primitivePrefixSelector() {
+    return primitivePrefixSelector;
+  }
+
+  /**
+   * Get the label of each prefixed unit by prefix index.
+   *
+   * @return The labels, or null if the prefix selector is not a {@link PrimitivePrefixSelector}.
+   */
+  @Nullable
+  PrefixLabelTable prefixLabels() {
+    return prefixLabels;
+  }
+
+  /**
+   * Get the precomputed labels for the base unit and all of its SI and IEC prefixed units.
+   */
+  ImmutableMap<Unit<Q>, String> unitLabels() {
+    return unitLabels;
+  }
+
+  private int prefixIndexFor(Number value) {
+    if (NumberTypes.isIntegral(value)) {
+      return primitivePrefixSelector.prefixIndexFor(value.longValue());
+    }
+    if (listener != null && !NumberTypes.isFloatingPoint(value)) {
+      listener.slowPathTaken(this, FormattingListener.SlowPath.NON_PRIMITIVE_VALUE);
+    }
+    return primitivePrefixSelector.prefixIndexFor(value.doubleValue());
+  }
+
+  private Quantity<Q> selectBestPrefix(Quantity<Q> measure) {
+    Quantity<Q> scaled = prefixSelector.selectBestPrefix(measure, baseUnit);
+    reportSelectedPrefix(scaled.getUnit());
+    return scaled;
+  }
+
+  private void reportPrefix(int prefixIndex) {
+    if (listener != null) {
+      listener.prefixSelected(this, prefixedUnits[prefixIndex]);
+    }
+  }
+
+  /**
+   * Report a prefix that was chosen without the help of a {@link PrimitivePrefixSelector}.
+   */
+  private void reportSelectedPrefix(Unit<Q> prefixedUnit) {
+    if (listener != null) {
+      listener.slowPathTaken(this, FormattingListener.SlowPath.QUANTITY_PREFIX_SELECTION);
+      listener.prefixSelected(this, prefixedUnit);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <P extends Quantity<P>> Unit<P>[] prefixedUnitsByIndex(
+      PrimitivePrefixSelector selector, Unit<P> baseUnit) {
+    Unit<P>[] units = (Unit<P>[]) new Unit<?>[selector.prefixCount()];
+    for (int i = 0; i < units.length; i++) {
+      units[i] = selector.prefixedUnit(baseUnit, i);
+    }
+    return units;
+  }
+
+  private static ThreadLocal<NumberFormat> perThreadCopiesOf(NumberFormat numberFormat) {
+    // The prototype is never used directly for formatting, and is never modified, so it is safe to
+    // clone it from any thread.
+    NumberFormat prototype = (NumberFormat) numberFormat.clone();
+    return ThreadLocal.withInitial(() -> (NumberFormat) prototype.clone());
+  }
+
+  /**
+   * Get the calling thread's copy of this formatter's NumberFormat, for use with
+   * {@link #appendNumber(double, NumberFormat, StringBuilder)} when formatting many values.
+   *
+   * @return The NumberFormat, or null if this formatter uses a FastDecimalRenderer.
+   */
+  @Nullable
+  NumberFormat threadNumberFormat() {
+    return (numberFormat != null) ? numberFormat.get() : null;
+  }
+
+  /**
+   * Append the numeric portion of an already-scaled value.
+   *
+   * @param threadNumberFormat The calling thread's copy of this formatter's NumberFormat, or null
+   *        if this formatter uses a FastDecimalRenderer.
+   */
+  void appendNumber(double scaledValue, @Nullable NumberFormat threadNumberFormat,
+      StringBuilder output) {
+    if (decimalRenderer != null) {
+      decimalRenderer.appendTo(scaledValue, output);
+    } else {
+      output.append(threadNumberFormat.format(scaledValue));
+    }
+  }
+
+  /**
+   * Append an already-scaled integer value exactly.
+   *
+   * @param threadNumberFormat The calling thread's copy of this formatter's NumberFormat, or null
+   *        if this formatter uses a FastDecimalRenderer.
+   */
+  void appendNumber(long scaledValue, @Nullable NumberFormat threadNumberFormat,
+      StringBuilder output) {
+    if (decimalRenderer != null) {
+      decimalRenderer.appendTo(scaledValue, output);
+    } else {
+      output.append(threadNumberFormat.format(scaledValue));
+    }
+  }
+
+  private void appendScaled(double scaledValue, String label, StringBuilder output) {
+    appendNumber(scaledValue, threadNumberFormat(), output);
+    output.append(' ');
+    output.append(label);
+  }
+
+  /**
+   * Get the label for a prefixed unit.
+   */
+  String labelFor(Unit<Q> unit) {
+    String label = unitLabels.get(unit);
+    if (label != null) {
+      return label;
+    }
+    // This unit came from a custom QuantityPrefixSelector, so there is no precomputed label for it.
+    if (listener != null) {
+      listener.slowPathTaken(this, FormattingListener.SlowPath.UNIT_SYMBOL_FORMATTING);
+    }
+    return SimpleUnitFormat.getInstance().format(unit);
+  }
+
+  /**
+   * Build an immutable table of labels for units that include prefixes from the SI and IEC Binary
+   * systems of prefixes. Labels come from a UnitLabelProvider when it has one for a given unit, or
+   * from a UnitFormat otherwise. The UnitFormat is only used for reading, so it is not modified.
    *
    * @param <P> The kind of measurement that this instance will provide labels for. Example:
    *        {@link javax.measure.quantity.Area Area}
    */
-  private static class UnitFormatLabelSetter<P extends Quantity<P>> {
+  private static class UnitLabelTableBuilder<P extends Quantity<P>> {
     private final UnitLabelProvider<P> unitLabels;
     private final UnitFormat fmt;
+    private final Map<Unit<P>, String> labels = new HashMap<>();
 
-    public UnitFormatLabelSetter(UnitLabelProvider<P> unitLabels, UnitFormat fmt) {
+    public UnitLabelTableBuilder(UnitLabelProvider<P> unitLabels, UnitFormat fmt) {
       this.unitLabels = unitLabels;
       this.fmt = fmt;
     }
 
-    private void setLabel(Unit<P> unit) {
+    private void addLabel(Unit<P> unit) {
       String label = unitLabels.getLabel(unit);
-      if (label != null) {
-        fmt.label(unit, label);
-      }
+      labels.put(unit, label != null ? label : fmt.format(unit));
     }
 
-    public void setBaseUnitLabel(Unit<P> unit) {
-      setLabel(unit);
+    public void addBaseUnitLabel(Unit<P> unit) {
+      addLabel(unit);
     }
 
     // TODO consider removing this hardcoded list of prefixes in favor of querying UnitLabelProvider
     // instances for the list of all prefixes which they can provide.
-    public void setSiUnitLabels(Unit<P> baseUnit) {
-      setLabel(MetricPrefix.KILO(baseUnit));
-      setLabel(MetricPrefix.MEGA(baseUnit));
-      setLabel(MetricPrefix.GIGA(baseUnit));
-      setLabel(MetricPrefix.TERA(baseUnit));
-      setLabel(MetricPrefix.PETA(baseUnit));
-      setLabel(MetricPrefix.EXA(baseUnit));
-      setLabel(MetricPrefix.ZETTA(baseUnit));
-      setLabel(MetricPrefix.YOTTA(baseUnit));
-    }
-
-    public void setIecBinaryUnitLabels(Unit<P> baseUnit) {
-      setLabel(BinaryPrefix.KIBI(baseUnit));
-      setLabel(BinaryPrefix.MEBI(baseUnit));
-      setLabel(BinaryPrefix.GIBI(baseUnit));
-      setLabel(BinaryPrefix.TEBI(baseUnit));
-      setLabel(BinaryPrefix.PEBI(baseUnit));
-      setLabel(BinaryPrefix.EXBI(baseUnit));
-      setLabel(BinaryPrefix.ZEBI(baseUnit));
-      setLabel(BinaryPrefix.YOBI(baseUnit));
+    public void addSiUnitLabels(Unit<P> baseUnit) {
+      addLabel(MetricPrefix.KILO(baseUnit));
+      addLabel(MetricPrefix.MEGA(baseUnit));
+      addLabel(MetricPrefix.GIGA(baseUnit));
+      addLabel(MetricPrefix.TERA(baseUnit));
+      addLabel(MetricPrefix.PETA(baseUnit));
+      addLabel(MetricPrefix.EXA(baseUnit));
+      addLabel(MetricPrefix.ZETTA(baseUnit));
+      addLabel(MetricPrefix.YOTTA(baseUnit));
+
+      addLabel(MetricPrefix.MILLI(baseUnit));
+      addLabel(MetricPrefix.MICRO(baseUnit));
+      addLabel(MetricPrefix.NANO(baseUnit));
+      addLabel(MetricPrefix.PICO(baseUnit));
+      addLabel(MetricPrefix.FEMTO(baseUnit));
+      addLabel(MetricPrefix.ATTO(baseUnit));
+      addLabel(MetricPrefix.ZEPTO(baseUnit));
+      addLabel(MetricPrefix.YOCTO(baseUnit));
+    }
+
+    public void addIecBinaryUnitLabels(Unit<P> baseUnit) {
+      addLabel(BinaryPrefix.KIBI(baseUnit));
+      addLabel(BinaryPrefix.MEBI(baseUnit));
+      addLabel(BinaryPrefix.GIBI(baseUnit));
+      addLabel(BinaryPrefix.TEBI(baseUnit));
+      addLabel(BinaryPrefix.PEBI(baseUnit));
+      addLabel(BinaryPrefix.EXBI(baseUnit));
+      addLabel(BinaryPrefix.ZEBI(baseUnit));
+      addLabel(BinaryPrefix.YOBI(baseUnit));
+    }
+
+    public ImmutableMap<Unit<P>, String> build() {
+      return ImmutableMap.copyOf(labels);
     }
   }
 }
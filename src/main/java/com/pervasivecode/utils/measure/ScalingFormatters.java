@@ -1,7 +1,12 @@
 package com.pervasivecode.utils.measure;
 
+import static com.google.common.base.Preconditions.checkNotNull;
 import java.text.NumberFormat;
 import java.util.Locale;
+import javax.measure.Quantity;
+import javax.measure.Unit;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import systems.uom.quantity.Information;
 import systems.uom.quantity.InformationRate;
 import systems.uom.unicode.CLDR;
@@ -9,10 +14,156 @@ import systems.uom.unicode.CLDR;
 /**
  * This class contains factory methods for formatters using commonly-used data size and data rate
  * formats, suitable for use in the {@link Locale#US US} locale.
+ * <p>
+ * Since {@link ScalingFormatter} instances are immutable and safe for use by multiple threads, the
+ * formatters returned by these methods are created once and then shared by all callers. The
+ * formatters returned by the named factory methods, such as
+ * {@link #dataAmountInIecBinaryBytesUs()}, are held in constants, so calling those methods on a hot
+ * path costs nothing.
  */
 public class ScalingFormatters {
   private ScalingFormatters() {}
 
+  // The maximum number of formatters kept for arbitrary combinations of unit, prefix system and
+  // locale. Applications normally use only a handful.
+  static final int MAXIMUM_CACHED_FORMATTERS = 256;
+
+  private static final Cache<FormatterKey, ScalingFormatter<?>> FORMATTERS =
+      CacheBuilder.newBuilder().maximumSize(MAXIMUM_CACHED_FORMATTERS).build();
+
+  // The formatters returned by the named factory methods. These are also in the cache, so that
+  // getInstance returns the same instances for the same arguments.
+  private static final ScalingFormatter<Information> IEC_BINARY_BYTES_US =
+      getInstance(CLDR.BYTE, PrefixSystem.IEC_BINARY, Locale.US);
+  private static final ScalingFormatter<Information> SI_BITS_US =
+      getInstance(CLDR.BIT, PrefixSystem.SI, Locale.US);
+  private static final ScalingFormatter<InformationRate> IEC_BINARY_BYTES_PER_SECOND_US =
+      getInstance(InformationRateUnits.BYTES_PER_SECOND, PrefixSystem.IEC_BINARY, Locale.US);
+  private static final ScalingFormatter<InformationRate> SI_BITS_PER_SECOND_US =
+      getInstance(InformationRateUnits.BITS_PER_SECOND, PrefixSystem.SI, Locale.US);
+
+  /**
+   * The attributes of a formatter that determine how it formats values. The base unit is compared
+   * by identity, since the hashCode and equals methods of uom-se units are expensive (see
+   * {@link UnitConverterCache}).
+   */
+  private static final class FormatterKey {
+    private final Unit<?> baseUnit;
+    private final PrefixSystem prefixSystem;
+    private final Locale locale;
+    private final boolean useFastDecimalRenderer;
+    private final int hashCode;
+
+    FormatterKey(Unit<?> baseUnit, PrefixSystem prefixSystem, Locale locale,
+        boolean useFastDecimalRenderer) {
+      this.baseUnit = baseUnit;
+      this.prefixSystem = prefixSystem;
+      this.locale = locale;
+      this.useFastDecimalRenderer = useFastDecimalRenderer;
+      this.hashCode = 31 * (31 * (31 * System.identityHashCode(baseUnit) + prefixSystem.hashCode())
+          + locale.hashCode()) + (useFastDecimalRenderer ? 1 : 0);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof FormatterKey)) {
+        return false;
+      }
+      FormatterKey otherKey = (FormatterKey) other;
+      return baseUnit == otherKey.baseUnit && prefixSystem == otherKey.prefixSystem
+          && locale.equals(otherKey.locale)
+          && useFastDecimalRenderer == otherKey.useFastDecimalRenderer;
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  /**
+   * Get a formatter that presents values measured in the specified unit, scaled with prefixes from
+   * the specified system of prefixes, and with numbers formatted as appropriate for the specified
+   * locale.
+   * <p>
+   * Unit labels are those provided by {@link SimpleUnitLabelProviders} for {@link Information} and
+   * {@link InformationRate} units, or the default labels of
+   * {@link tec.uom.se.format.SimpleUnitFormat SimpleUnitFormat} for other units. (Unit labels are
+   * not localized.)
+   * <p>
+   * The same formatter instance is normally returned each time this method is called with the same
+   * unit instance, prefix system and locale. (Equal but distinct unit instances get separate
+   * formatters, and formatters for rarely used combinations may be discarded and recreated.)
+   *
+   * @param <Q> The type of measurement that the formatter will format. Example:
+   *        {@link Information}
+   * @param baseUnit The unprefixed unit that values will be scaled from, e.g. {@link CLDR#BYTE}.
+   * @param prefixSystem The system of prefixes to use when scaling values.
+   * @param locale The locale to use when formatting the numeric portion of scaled values.
+   * @return The formatter.
+   */
+  public static <Q extends Quantity<Q>> ScalingFormatter<Q> getInstance(Unit<Q> baseUnit,
+      PrefixSystem prefixSystem, Locale locale) {
+    return getInstance(baseUnit, prefixSystem, locale, false);
+  }
+
+  /**
+   * Get a formatter that behaves exactly like the one returned by
+   * {@link #getInstance(Unit, PrefixSystem, Locale)}, except that the numeric portion of each
+   * value is rendered by a {@link FastDecimalRenderer} rather than by a {@link NumberFormat}. The
+   * output is identical, but formatting is considerably faster and allocates less.
+   * <p>
+   * The same formatter instance is normally returned each time this method is called with the same
+   * unit instance, prefix system and locale. (Equal but distinct unit instances get separate
+   * formatters, and formatters for rarely used combinations may be discarded and recreated.)
+   *
+   * @param <Q> The type of measurement that the formatter will format. Example:
+   *        {@link Information}
+   * @param baseUnit The unprefixed unit that values will be scaled from, e.g. {@link CLDR#BYTE}.
+   * @param prefixSystem The system of prefixes to use when scaling values.
+   * @param locale The locale to use when formatting the numeric portion of scaled values.
+   * @return The formatter.
+   * @throws IllegalArgumentException if the locale is not supported by FastDecimalRenderer.
+   * @see FastDecimalRenderer#isSupported(Locale)
+   */
+  public static <Q extends Quantity<Q>> ScalingFormatter<Q> getFastInstance(Unit<Q> baseUnit,
+      PrefixSystem prefixSystem, Locale locale) {
+    return getInstance(baseUnit, prefixSystem, locale, true);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <Q extends Quantity<Q>> ScalingFormatter<Q> getInstance(Unit<Q> baseUnit,
+      PrefixSystem prefixSystem, Locale locale, boolean useFastDecimalRenderer) {
+    FormatterKey key = new FormatterKey(checkNotNull(baseUnit), checkNotNull(prefixSystem),
+        checkNotNull(locale), useFastDecimalRenderer);
+    ScalingFormatter<?> formatter = FORMATTERS.getIfPresent(key);
+    if (formatter == null) {
+      if (useFastDecimalRenderer) {
+        // Check this outside of the cache loader, so that an unsupported locale results in an
+        // IllegalArgumentException rather than an exception wrapped by the cache.
+        FastDecimalRenderer renderer = FastDecimalRenderer.forLocale(locale);
+        formatter = FORMATTERS.asMap().computeIfAbsent(key,
+            (k) -> new ScalingFormatter<Q>(baseUnit, prefixSystem.prefixSelector(), renderer,
+                SimpleUnitLabelProviders.getUsLabeler()));
+      } else {
+        formatter = FORMATTERS.asMap().computeIfAbsent(key,
+            (k) -> new ScalingFormatter<Q>(baseUnit, prefixSystem.prefixSelector(),
+                NumberFormat.getInstance(locale), SimpleUnitLabelProviders.getUsLabeler()));
+      }
+    }
+    return (ScalingFormatter<Q>) formatter;
+  }
+
+  /**
+   * Get the approximate number of formatters currently in the cache.
+   */
+  static long cachedFormatterCount() {
+    return FORMATTERS.size();
+  }
+
   /**
    * Get a formatter that presents data amounts measured in bytes scaled with IEC binary prefixes
    * and formatted as appropriate for the {@link Locale#US US} locale.
@@ -20,8 +171,7 @@ public class ScalingFormatters {
    * @return The formatter.
    */
   public static ScalingFormatter<Information> dataAmountInIecBinaryBytesUs() {
-    return new ScalingFormatter<Information>(CLDR.BYTE, new IecBinaryPrefixSelector(),
-        NumberFormat.getInstance(Locale.US), SimpleUnitLabelProviders.getUsInformationLabeler());
+    return IEC_BINARY_BYTES_US;
   }
 
   /**
@@ -31,8 +181,7 @@ public class ScalingFormatters {
    * @return The formatter.
    */
   public static ScalingFormatter<Information> dataAmountInSiBitsUs() {
-    return new ScalingFormatter<Information>(CLDR.BIT, new SiPrefixSelector(),
-        NumberFormat.getInstance(Locale.US), SimpleUnitLabelProviders.getUsInformationLabeler());
+    return SI_BITS_US;
   }
 
   /**
@@ -42,9 +191,7 @@ public class ScalingFormatters {
    * @return The formatter.
    */
   public static ScalingFormatter<InformationRate> dataRateInIecBinaryBytesPerSecondUs() {
-    return new ScalingFormatter<InformationRate>(InformationRateUnits.BYTES_PER_SECOND,
-        new IecBinaryPrefixSelector(), NumberFormat.getInstance(Locale.US),
-        SimpleUnitLabelProviders.getUsInformationRateLabeler());
+    return IEC_BINARY_BYTES_PER_SECOND_US;
   }
 
   /**
@@ -54,8 +201,6 @@ public class ScalingFormatters {
    * @return The formatter.
    */
   public static ScalingFormatter<InformationRate> dataRateInSiBitsPerSecondUs() {
-    return new ScalingFormatter<InformationRate>(InformationRateUnits.BITS_PER_SECOND,
-        new SiPrefixSelector(), NumberFormat.getInstance(Locale.US),
-        SimpleUnitLabelProviders.getUsInformationRateLabeler());
+    return SI_BITS_PER_SECOND_US;
   }
 }
@@ -0,0 +1,205 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.measure.Quantity;
+import javax.measure.Unit;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Encoder that writes the same text as a {@link ScalingFormatter} (such as "12.5 MiB") directly
+ * into a byte array or {@link ByteBuffer}, encoded as UTF-8. (For the US locale and the labels
+ * provided by {@link SimpleUnitLabelProviders}, the encoded output is plain ASCII.)
+ * <p>
+ * This is intended for writing wire formats such as the Prometheus text exposition format, where
+ * the caller needs bytes rather than a String. Unit labels are encoded once, when the formatter or
+ * encoder is constructed, and the numeric portion is encoded without using a
+ * {@link java.nio.charset.CharsetEncoder CharsetEncoder}.
+ * <p>
+ * Instances are safe for concurrent use by multiple threads.
+ *
+ * @param <Q> The type of measurement that the encoder is able to encode. Example:
+ *        {@link systems.uom.quantity.Information Information}
+ */
+public class ScalingUtf8Encoder<Q extends Quantity<Q>> {
+  // The numeric portion of a value is rendered into this per-thread buffer and then encoded from
+  // it, so that no intermediate String is constructed.
+  private static final ThreadLocal<StringBuilder> NUMBER_BUFFER =
+      ThreadLocal.withInitial(StringBuilder::new);
+
+  private final ScalingFormatter<Q> formatter;
+  @Nullable
+  private final PrimitivePrefixSelector primitivePrefixSelector;
+  @Nullable
+  private final PrefixLabelTable prefixLabels;
+  private final ImmutableMap<Unit<Q>, byte[]> encodedLabels;
+
+  /**
+   * Set up a new instance that encodes values the same way that the specified formatter formats
+   * them.
+   *
+   * @param formatter The formatter whose prefix selection, number format, and unit labels should be
+   *        used.
+   */
+  public ScalingUtf8Encoder(ScalingFormatter<Q> formatter) {
+    this.formatter = checkNotNull(formatter);
+    this.primitivePrefixSelector = formatter.primitivePrefixSelector();
+    this.prefixLabels = formatter.prefixLabels();
+
+    // The formatter already has encoded labels for a PrimitivePrefixSelector, so the labels only
+    // need to be encoded here for other kinds of selectors.
+    ImmutableMap.Builder<Unit<Q>, byte[]> labels = ImmutableMap.builder();
+    if (prefixLabels == null) {
+      for (Map.Entry<Unit<Q>, String> entry : formatter.unitLabels().entrySet()) {
+        labels.put(entry.getKey(), entry.getValue().getBytes(UTF_8));
+      }
+    }
+    this.encodedLabels = labels.build();
+  }
+
+  /**
+   * Scale and encode a value, writing the encoded bytes into a byte array.
+   * <p>
+   * If there is not enough room in the array for the encoded value, nothing is written.
+   *
+   * @param value The value to scale and encode, in terms of the formatter's base unit.
+   * @param destination The array into which the encoded bytes should be written.
+   * @param offset The index in {@code destination} at which the first byte should be written.
+   * @return The number of bytes written.
+   * @throws IndexOutOfBoundsException if there is not enough room in {@code destination}.
+   */
+  public int encode(double value, byte[] destination, int offset) {
+    StringBuilder number = numberBuffer();
+    byte[] label = appendScaledNumber(value, number);
+    int length = encodedLength(number) + 1 + label.length;
+    checkPositionIndexes(offset, offset + length, destination.length);
+
+    int position = encodeChars(number, destination, offset);
+    destination[position++] = ' ';
+    System.arraycopy(label, 0, destination, position, label.length);
+    return length;
+  }
+
+  /**
+   * Scale and encode a value, writing the encoded bytes into a ByteBuffer starting at its current
+   * position, and advancing its position past the written bytes.
+   * <p>
+   * If there is not enough room in the buffer for the encoded value, nothing is written.
+   *
+   * @param value The value to scale and encode, in terms of the formatter's base unit.
+   * @param destination The buffer into which the encoded bytes should be written.
+   * @return The number of bytes written.
+   * @throws BufferOverflowException if there is not enough room remaining in {@code destination}.
+   */
+  public int encode(double value, ByteBuffer destination) {
+    StringBuilder number = numberBuffer();
+    byte[] label = appendScaledNumber(value, number);
+    int length = encodedLength(number) + 1 + label.length;
+    if (destination.remaining() < length) {
+      throw new BufferOverflowException();
+    }
+
+    if (destination.hasArray()) {
+      int start = destination.arrayOffset() + destination.position();
+      int position = encodeChars(number, destination.array(), start);
+      destination.array()[position++] = ' ';
+      System.arraycopy(label, 0, destination.array(), position, label.length);
+      destination.position(destination.position() + length);
+    } else {
+      encodeChars(number, destination);
+      destination.put((byte) ' ');
+      destination.put(label);
+    }
+    return length;
+  }
+
+  /**
+   * Get the calling thread's buffer for the numeric portion of a value, emptied.
+   */
+  private static StringBuilder numberBuffer() {
+    StringBuilder number = NUMBER_BUFFER.get();
+    number.setLength(0);
+    return number;
+  }
+
+  /**
+   * Scale a value and append its numeric portion to the specified StringBuilder.
+   *
+   * @return The encoded label of the prefixed unit that the value was scaled to.
+   */
+  private byte[] appendScaledNumber(double value, StringBuilder number) {
+    if (primitivePrefixSelector != null) {
+      int prefixIndex = primitivePrefixSelector.prefixIndexFor(value);
+      formatter.appendNumber(primitivePrefixSelector.scale(value, prefixIndex),
+          formatter.threadNumberFormat(), number);
+      return prefixLabels.encodedLabel(prefixIndex);
+    }
+    Unit<Q> prefixedUnit = formatter.prefixedUnitFor(value);
+    formatter.appendNumber(formatter.scale(value, prefixedUnit), formatter.threadNumberFormat(),
+        number);
+    return encodedLabelFor(prefixedUnit);
+  }
+
+  private byte[] encodedLabelFor(Unit<Q> prefixedUnit) {
+    byte[] label = encodedLabels.get(prefixedUnit);
+    if (label != null) {
+      return label;
+    }
+    // This unit came from a custom QuantityPrefixSelector, so there is no precomputed label for it.
+    return formatter.labelFor(prefixedUnit).getBytes(UTF_8);
+  }
+
+  // Rendered numbers only contain characters from the Basic Multilingual Plane (digits, signs,
+  // and separators), so surrogate pairs are not handled here.
+  private static int encodedLength(CharSequence chars) {
+    int length = chars.length();
+    for (int i = 0; i < chars.length(); i++) {
+      char c = chars.charAt(i);
+      if (c >= 0x800) {
+        length += 2;
+      } else if (c >= 0x80) {
+        length += 1;
+      }
+    }
+    return length;
+  }
+
+  private static int encodeChars(CharSequence chars, byte[] destination, int offset) {
+    int position = offset;
+    for (int i = 0; i < chars.length(); i++) {
+      char c = chars.charAt(i);
+      if (c < 0x80) {
+        destination[position++] = (byte) c;
+      } else if (c < 0x800) {
+        destination[position++] = (byte) (0xC0 | (c >> 6));
+        destination[position++] = (byte) (0x80 | (c & 0x3F));
+      } else {
+        destination[position++] = (byte) (0xE0 | (c >> 12));
+        destination[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        destination[position++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+    return position;
+  }
+
+  private static void encodeChars(CharSequence chars, ByteBuffer destination) {
+    for (int i = 0; i < chars.length(); i++) {
+      char c = chars.charAt(i);
+      if (c < 0x80) {
+        destination.put((byte) c);
+      } else if (c < 0x800) {
+        destination.put((byte) (0xC0 | (c >> 6)));
+        destination.put((byte) (0x80 | (c & 0x3F)));
+      } else {
+        destination.put((byte) (0xE0 | (c >> 12)));
+        destination.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+        destination.put((byte) (0x80 | (c & 0x3F)));
+      }
+    }
+  }
+}
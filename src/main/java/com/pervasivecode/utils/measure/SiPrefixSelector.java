@@ -1,8 +1,11 @@
 package com.pervasivecode.utils.measure;
 
+import static com.google.common.base.Preconditions.checkNotNull;
 import java.math.BigDecimal;
+import javax.annotation.Nullable;
 import javax.measure.Quantity;
 import javax.measure.Unit;
+import tec.uom.se.quantity.Quantities;
 import tec.uom.se.unit.MetricPrefix;
 
 /**
@@ -10,8 +13,77 @@ import tec.uom.se.unit.MetricPrefix;
  * {@link Quantity} transformed to use that prefix.
  * <p>
  * Examples: given 10,000 meters, return 10 kilometers. Given 1,000,000 joules, return 1 megajoule.
+ * <p>
+ * The prefix is computed from the decimal exponent of the value, and the prefixed units for each
+ * base unit are created once and then reused, so selecting a prefix takes a constant amount of time
+ * regardless of the magnitude of the value. Conversions between units use converters that are
+ * resolved once and then cached. Instances are safe for use by multiple threads.
  */
-public class SiPrefixSelector implements QuantityPrefixSelector {
+public class SiPrefixSelector implements PrimitivePrefixSelector {
+  // Prefixes for 1000^x, ordered from the smallest (x = -8) to the largest (x = 8). The null entry
+  // represents the unprefixed base unit.
+  private static final MetricPrefix[] PREFIXES = {MetricPrefix.YOCTO, MetricPrefix.ZEPTO,
+      MetricPrefix.ATTO, MetricPrefix.FEMTO, MetricPrefix.PICO, MetricPrefix.NANO,
+      MetricPrefix.MICRO, MetricPrefix.MILLI, null, MetricPrefix.KILO, MetricPrefix.MEGA,
+      MetricPrefix.GIGA, MetricPrefix.TERA, MetricPrefix.PETA, MetricPrefix.EXA,
+      MetricPrefix.ZETTA, MetricPrefix.YOTTA};
+
+  static final int BASE_INDEX = 8;
+
+  private static final int MAX_INDEX = PREFIXES.length - 1;
+
+  // The smallest magnitude that will be presented with the prefix at the same index.
+  //
+  // The SiThousandPrefixes factors are exact powers of ten, and each of these is the closest double
+  // to the corresponding factor, so comparing a double against them gives the same answer as
+  // comparing BigDecimal.valueOf(thatDouble) against the exact factor.
+  private static final double[] THRESHOLDS = {SiThousandPrefixes.YOCTO_FACTOR.doubleValue(),
+      SiThousandPrefixes.ZEPTO_FACTOR.doubleValue(), SiThousandPrefixes.ATTO_FACTOR.doubleValue(),
+      SiThousandPrefixes.FEMTO_FACTOR.doubleValue(), SiThousandPrefixes.PICO_FACTOR.doubleValue(),
+      SiThousandPrefixes.NANO_FACTOR.doubleValue(), SiThousandPrefixes.MICRO_FACTOR.doubleValue(),
+      SiThousandPrefixes.MILLI_FACTOR.doubleValue(), 1.0d,
+      SiThousandPrefixes.KILO_FACTOR.doubleValue(), SiThousandPrefixes.MEGA_FACTOR.doubleValue(),
+      SiThousandPrefixes.GIGA_FACTOR.doubleValue(), SiThousandPrefixes.TERA_FACTOR.doubleValue(),
+      SiThousandPrefixes.PETA_FACTOR.doubleValue(), SiThousandPrefixes.EXA_FACTOR.doubleValue(),
+      SiThousandPrefixes.ZETTA_FACTOR.doubleValue(), SiThousandPrefixes.YOTTA_FACTOR.doubleValue()};
+
+  // The reciprocals of the factors of the prefixes that are smaller than one, which are exact
+  // powers of ten. The prefixed unit converters in uom-se multiply by these rather than dividing by
+  // the factor, so scale(double, int) does the same in order to produce identical results.
+  private static final double[] INVERSE_FACTORS = {
+      BigDecimal.ONE.divide(SiThousandPrefixes.YOCTO_FACTOR).doubleValue(),
+      BigDecimal.ONE.divide(SiThousandPrefixes.ZEPTO_FACTOR).doubleValue(),
+      BigDecimal.ONE.divide(SiThousandPrefixes.ATTO_FACTOR).doubleValue(),
+      BigDecimal.ONE.divide(SiThousandPrefixes.FEMTO_FACTOR).doubleValue(),
+      BigDecimal.ONE.divide(SiThousandPrefixes.PICO_FACTOR).doubleValue(),
+      BigDecimal.ONE.divide(SiThousandPrefixes.NANO_FACTOR).doubleValue(),
+      BigDecimal.ONE.divide(SiThousandPrefixes.MICRO_FACTOR).doubleValue(),
+      BigDecimal.ONE.divide(SiThousandPrefixes.MILLI_FACTOR).doubleValue()};
+
+  private final PrefixedUnitCache prefixedUnits =
+      new PrefixedUnitCache(SiPrefixSelector::buildPrefixedUnits);
+
+  @Nullable
+  private final FormattingListener listener;
+
+  /**
+   * Create a selector.
+   */
+  public SiPrefixSelector() {
+    this.listener = null;
+  }
+
+  /**
+   * Create a selector that reports each prefix that it selects via
+   * {@link #selectBestPrefix(Quantity, Unit)} or {@link #selectBestPrefixedUnit(double, Unit)} to
+   * the specified listener. Prefixes selected via the primitive {@code prefixIndexFor} methods are
+   * not reported, since those are used by formatters that report prefixes themselves.
+   *
+   * @param listener The listener that will be notified about selected prefixes.
+   */
+  public SiPrefixSelector(FormattingListener listener) {
+    this.listener = checkNotNull(listener);
+  }
 
   /**
    * Apply an appropriate prefix from the SI set of prefixes for a given measurement.
@@ -23,61 +95,105 @@ public class SiPrefixSelector implements QuantityPrefixSelector {
   @Override
   public <Q extends Quantity<Q>> Quantity<Q> selectBestPrefix(Quantity<Q> measure,
       Unit<Q> formatUnit) {
-
-    BigDecimal asBig = BigDecimal.valueOf(
-        measure.to(formatUnit).getValue().doubleValue());
-
-    if (asBig.compareTo(SiThousandPrefixes.YOTTA_FACTOR) >= 0) {
-      return measure.to(MetricPrefix.YOTTA(formatUnit));
+    UnitConverterCache converters = UnitConverterCache.shared();
+    Number value = converters.convertValue(measure, formatUnit);
+    if (listener != null
+        && !(NumberTypes.isIntegral(value) || NumberTypes.isFloatingPoint(value))) {
+      listener.slowPathTaken(this, FormattingListener.SlowPath.NON_PRIMITIVE_VALUE);
     }
-    if (asBig.compareTo(SiThousandPrefixes.ZETTA_FACTOR) >= 0) {
-      return measure.to(MetricPrefix.ZETTA(formatUnit));
+    Unit<Q> prefixedUnit = prefixedUnits.get(formatUnit)[prefixIndex(value.doubleValue())];
+    if (listener != null) {
+      listener.prefixSelected(this, prefixedUnit);
     }
+    Number scaledValue = converters.getConverter(formatUnit, prefixedUnit).convert(value);
+    return Quantities.getQuantity(scaledValue, prefixedUnit);
+  }
 
-    if (asBig.compareTo(SiThousandPrefixes.EXA_FACTOR) >= 0) {
-      return measure.to(MetricPrefix.EXA(formatUnit));
-    }
-    if (asBig.compareTo(SiThousandPrefixes.PETA_FACTOR) >= 0) {
-      return measure.to(MetricPrefix.PETA(formatUnit));
-    }
-    if (asBig.compareTo(SiThousandPrefixes.TERA_FACTOR) >= 0) {
-      return measure.to(MetricPrefix.TERA(formatUnit));
+  /**
+   * Determine the appropriate prefix from the SI set of prefixes for a given value. The prefix is
+   * chosen based on the magnitude of the value, so negative values use the same prefix as the
+   * corresponding positive values. Zero, infinite, and NaN values use the unprefixed unit.
+   *
+   * @param value A value to scale with a prefix, in units of {@code formatUnit}.
+   * @param formatUnit The base "ones" unit of the provided value.
+   * @return The unit, with an appropriate prefix from the SI system.
+   */
+  @Override
+  public <Q extends Quantity<Q>> Unit<Q> selectBestPrefixedUnit(double value,
+      Unit<Q> formatUnit) {
+    Unit<Q> prefixedUnit = prefixedUnits.get(formatUnit)[prefixIndex(value)];
+    if (listener != null) {
+      listener.prefixSelected(this, prefixedUnit);
     }
-    if (asBig.compareTo(SiThousandPrefixes.GIGA_FACTOR) >= 0) {
-      return measure.to(MetricPrefix.GIGA(formatUnit));
+    return prefixedUnit;
+  }
+
+  @Override
+  public int prefixCount() {
+    return PREFIXES.length;
+  }
+
+  /**
+   * Determine the appropriate prefix from the SI set of prefixes for a given value. Index 0 is the
+   * yocto prefix, index 8 is the unprefixed base unit, and index 16 is the yotta prefix.
+   *
+   * @param value A value to scale with a prefix, in terms of the unprefixed base unit.
+   * @return The index of the prefix.
+   */
+  @Override
+  public int prefixIndexFor(double value) {
+    return prefixIndex(value);
+  }
+
+  @Override
+  public double scale(double value, int prefixIndex) {
+    if (prefixIndex < BASE_INDEX) {
+      return value * INVERSE_FACTORS[prefixIndex];
     }
-    if (asBig.compareTo(SiThousandPrefixes.MEGA_FACTOR) >= 0) {
-      return measure.to(MetricPrefix.MEGA(formatUnit));
+    return value / THRESHOLDS[prefixIndex];
+  }
+
+  @Override
+  public <Q extends Quantity<Q>> Unit<Q> prefixedUnit(Unit<Q> whole, int prefixIndex) {
+    return prefixedUnits.get(whole)[prefixIndex];
+  }
+
+  /**
+   * Find the index into {@link #PREFIXES} of the prefix that should be used for a value.
+   */
+  static int prefixIndex(double value) {
+    double magnitude = Math.abs(value);
+    if (magnitude == 0 || Double.isNaN(magnitude) || Double.isInfinite(magnitude)) {
+      return BASE_INDEX;
     }
-    if (asBig.compareTo(SiThousandPrefixes.KILO_FACTOR) >= 0) {
-      return measure.to(MetricPrefix.KILO(formatUnit));
+
+    int index = Math.floorDiv((int) Math.floor(Math.log10(magnitude)), 3) + BASE_INDEX;
+    index = Math.max(0, Math.min(MAX_INDEX, index));
+
+    // Math.log10 may be off by one ulp near a power of ten, which could put the value into the
+    // neighboring bucket. Check against the exact thresholds to correct for that.
+    if (index < MAX_INDEX && magnitude >= THRESHOLDS[index + 1]) {
+      index++;
+    } else if (index > 0 && magnitude < THRESHOLDS[index]) {
+      index--;
     }
+    return index;
+  }
 
-    if (asBig.compareTo(BigDecimal.ONE) < 0) {
-      if (asBig.compareTo(SiThousandPrefixes.MILLI_FACTOR) >= 0) {
-        return measure.to(MetricPrefix.MILLI(formatUnit));
-      }
-      if (asBig.compareTo(SiThousandPrefixes.MICRO_FACTOR) >= 0) {
-        return measure.to(MetricPrefix.MICRO(formatUnit));
-      }
-      if (asBig.compareTo(SiThousandPrefixes.NANO_FACTOR) >= 0) {
-        return measure.to(MetricPrefix.NANO(formatUnit));
-      }
-      if (asBig.compareTo(SiThousandPrefixes.PICO_FACTOR) >= 0) {
-        return measure.to(MetricPrefix.PICO(formatUnit));
-      }
-      if (asBig.compareTo(SiThousandPrefixes.FEMTO_FACTOR) >= 0) {
-        return measure.to(MetricPrefix.FEMTO(formatUnit));
-      }
-      if (asBig.compareTo(SiThousandPrefixes.ATTO_FACTOR) >= 0) {
-        return measure.to(MetricPrefix.ATTO(formatUnit));
-      }
-      if (asBig.compareTo(SiThousandPrefixes.ZEPTO_FACTOR) >= 0) {
-        return measure.to(MetricPrefix.ZEPTO(formatUnit));
-      }
-      return measure.to(MetricPrefix.YOCTO(formatUnit));
+  private static <Q extends Quantity<Q>> Unit<?>[] buildPrefixedUnits(Unit<Q> formatUnit) {
+    Unit<?>[] units = new Unit<?>[PREFIXES.length];
+    for (int i = 0; i < PREFIXES.length; i++) {
+      units[i] = applyPrefix(PREFIXES[i], formatUnit);
     }
+    return units;
+  }
 
-    return measure.to(formatUnit);
+  private static <Q extends Quantity<Q>> Unit<Q> applyPrefix(@Nullable MetricPrefix prefix,
+      Unit<Q> formatUnit) {
+    if (prefix == null) {
+      return formatUnit;
+    }
+    // This is equivalent to MetricPrefix.KILO(formatUnit), etc.
+    return formatUnit.transform(prefix.getConverter());
   }
 }
@@ -4,6 +4,7 @@ import static com.pervasivecode.utils.measure.InformationRateUnits.BITS_PER_SECO
 import static com.pervasivecode.utils.measure.InformationRateUnits.BYTES_PER_SECOND;
 import static systems.uom.unicode.CLDR.BIT;
 import static systems.uom.unicode.CLDR.BYTE;
+import javax.measure.Quantity;
 import javax.measure.Unit;
 import com.google.common.collect.ImmutableMap;
 import systems.uom.quantity.Information;
@@ -140,4 +141,33 @@ public class SimpleUnitLabelProviders {
   public static UnitLabelProvider<InformationRate> getUsInformationRateLabeler() {
     return new SimpleUnitLabelProvider<>(US_INFORMATION_RATE_LABELS);
   }
+
+  /**
+   * Get the labels provided by {@link #getUsInformationLabeler()}.
+   */
+  static ImmutableMap<Unit<Information>, String> usInformationLabels() {
+    return US_INFORMATION_LABELS;
+  }
+
+  /**
+   * Get the labels provided by {@link #getUsInformationRateLabeler()}.
+   */
+  static ImmutableMap<Unit<InformationRate>, String> usInformationRateLabels() {
+    return US_INFORMATION_RATE_LABELS;
+  }
+
+  /**
+   * Get a UnitLabelProvider for any kind of quantity, which provides the same labels as
+   * {@link #getUsInformationLabeler()} and {@link #getUsInformationRateLabeler()}, and no labels
+   * for any other units.
+   *
+   * @param <Q> The kind of quantity for which labels will be provided.
+   * @return The UnitLabelProvider described above.
+   */
+  static <Q extends Quantity<Q>> UnitLabelProvider<Q> getUsLabeler() {
+    return (unit) -> {
+      String label = US_INFORMATION_LABELS.get(unit);
+      return (label != null) ? label : US_INFORMATION_RATE_LABELS.get(unit);
+    };
+  }
 }
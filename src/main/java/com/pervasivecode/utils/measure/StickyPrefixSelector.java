@@ -0,0 +1,169 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import javax.measure.Quantity;
+import javax.measure.Unit;
+import tec.uom.se.quantity.Quantities;
+
+/**
+ * A prefix selector for a series of related values, such as successive samples of one counter,
+ * that keeps using the prefix it chose for the previous value as long as the new value still fits
+ * that prefix.
+ * <p>
+ * Consecutive values in a series usually have the same prefix, so most values are checked against
+ * the range of the previous prefix with two comparisons, and only values outside that range are
+ * passed to the underlying selector. The range of each prefix is computed once, from the
+ * underlying selector itself, so without hysteresis the chosen prefixes are exactly the same as
+ * those of the underlying selector.
+ * <p>
+ * With hysteresis, the previous prefix is kept until a value is outside its range by more than the
+ * specified fraction, so that a live display of a value hovering around a prefix boundary does not
+ * keep switching between, for example, "1,023.5 KiB" and "1 MiB". With a hysteresis of 0.1, a
+ * series that is being presented in KiB switches to MiB only once a value reaches 1.1 MiB, and then
+ * switches back to KiB only once a value falls below 0.9 MiB.
+ * <p>
+ * Each series of values should have its own instance, and therefore its own formatter, since the
+ * formatter will use this selector to choose prefixes. Instances are safe for use by multiple
+ * threads, but values from concurrent threads are treated as one interleaved series. Zero,
+ * infinite and NaN values are passed to the underlying selector without affecting the prefix that
+ * will be kept for the next value.
+ */
+public final class StickyPrefixSelector implements PrimitivePrefixSelector {
+  // 2^53: every long with a smaller magnitude can be represented exactly as a double.
+  private static final long MAX_EXACT_LONG = 1L << 53;
+
+  private static final int NO_PREFIX_INDEX = -1;
+
+  private final PrimitivePrefixSelector selector;
+  // For each prefix index, the range of magnitudes for which that prefix is kept once it has been
+  // chosen: from keepLowerBounds[i] (inclusive) to keepUpperBounds[i] (exclusive).
+  private final double[] keepLowerBounds;
+  private final double[] keepUpperBounds;
+
+  // The prefix index chosen for the most recent nonzero finite value. Any index is valid, so it is
+  // harmless if concurrent threads overwrite each other's updates.
+  private volatile int lastPrefixIndex;
+
+  /**
+   * Create a selector that keeps the previous prefix only while it is exactly the prefix that the
+   * underlying selector would choose.
+   *
+   * @param selector The selector to use when a value does not fit the previous prefix.
+   */
+  public StickyPrefixSelector(PrimitivePrefixSelector selector) {
+    this(selector, 0.0d);
+  }
+
+  /**
+   * Create a selector that keeps the previous prefix until a value is outside that prefix's range
+   * by more than the specified fraction.
+   *
+   * @param selector The selector to use when a value does not fit the previous prefix.
+   * @param hysteresis How far outside of the previous prefix's range a value must be before a
+   *        different prefix is chosen, as a fraction of the range's boundary. Example: 0.1
+   */
+  public StickyPrefixSelector(PrimitivePrefixSelector selector, double hysteresis) {
+    this.selector = checkNotNull(selector);
+    checkArgument(hysteresis >= 0.0d && hysteresis < 1.0d,
+        "hysteresis must be at least 0 and less than 1, but was %s", hysteresis);
+
+    int prefixCount = selector.prefixCount();
+    this.keepLowerBounds = new double[prefixCount];
+    this.keepUpperBounds = new double[prefixCount];
+    double lowerBound = smallestMagnitudeWithPrefixIndex(selector, 0);
+    for (int i = 0; i < prefixCount; i++) {
+      double upperBound = (i + 1 < prefixCount)
+          ? smallestMagnitudeWithPrefixIndex(selector, i + 1)
+          : Double.POSITIVE_INFINITY;
+      // Zero is never kept, even if the smallest lower bound rounds down to it.
+      keepLowerBounds[i] = Math.max(lowerBound * (1.0d - hysteresis), Double.MIN_VALUE);
+      keepUpperBounds[i] = upperBound * (1.0d + hysteresis);
+      lowerBound = upperBound;
+    }
+    this.lastPrefixIndex = NO_PREFIX_INDEX;
+  }
+
+  @Override
+  public <Q extends Quantity<Q>> Quantity<Q> selectBestPrefix(Quantity<Q> measure,
+      Unit<Q> formatUnit) {
+    UnitConverterCache converters = UnitConverterCache.shared();
+    Number value = converters.convertValue(measure, formatUnit);
+    int prefixIndex;
+    if (NumberTypes.isIntegral(value)) {
+      prefixIndex = prefixIndexFor(value.longValue());
+    } else {
+      prefixIndex = prefixIndexFor(value.doubleValue());
+    }
+    Unit<Q> prefixedUnit = selector.prefixedUnit(formatUnit, prefixIndex);
+    Number scaledValue = converters.getConverter(formatUnit, prefixedUnit).convert(value);
+    return Quantities.getQuantity(scaledValue, prefixedUnit);
+  }
+
+  @Override
+  public int prefixCount() {
+    return keepLowerBounds.length;
+  }
+
+  @Override
+  public int prefixIndexFor(double value) {
+    double magnitude = Math.abs(value);
+    int prefixIndex = lastPrefixIndex;
+    if (prefixIndex != NO_PREFIX_INDEX && magnitude >= keepLowerBounds[prefixIndex]
+        && magnitude < keepUpperBounds[prefixIndex]) {
+      return prefixIndex;
+    }
+    prefixIndex = selector.prefixIndexFor(value);
+    remember(magnitude, prefixIndex);
+    return prefixIndex;
+  }
+
+  @Override
+  public int prefixIndexFor(long value) {
+    if (value > -MAX_EXACT_LONG && value < MAX_EXACT_LONG) {
+      return prefixIndexFor((double) value);
+    }
+    // The underlying selector may be exact for large integers where a double comparison is not.
+    int prefixIndex = selector.prefixIndexFor(value);
+    remember(Math.abs((double) value), prefixIndex);
+    return prefixIndex;
+  }
+
+  @Override
+  public double scale(double value, int prefixIndex) {
+    return selector.scale(value, prefixIndex);
+  }
+
+  @Override
+  public <Q extends Quantity<Q>> Unit<Q> prefixedUnit(Unit<Q> whole, int prefixIndex) {
+    return selector.prefixedUnit(whole, prefixIndex);
+  }
+
+  private void remember(double magnitude, int prefixIndex) {
+    // Zero and non-finite values don't indicate the scale of the series, so don't stick to their
+    // prefix.
+    if (magnitude > 0.0d && magnitude < Double.POSITIVE_INFINITY) {
+      lastPrefixIndex = prefixIndex;
+    }
+  }
+
+  /**
+   * Find the smallest positive finite value for which the selector chooses the specified prefix or
+   * a larger one, or positive infinity if there is no such value. This is a binary search over the
+   * bit patterns of positive doubles, which are ordered in the same way as the doubles themselves.
+   */
+  private static double smallestMagnitudeWithPrefixIndex(PrimitivePrefixSelector selector,
+      int prefixIndex) {
+    long low = Double.doubleToRawLongBits(Double.MIN_VALUE);
+    long high = Double.doubleToRawLongBits(Double.POSITIVE_INFINITY);
+    while (low < high) {
+      long middle = low + (high - low) / 2;
+      if (selector.prefixIndexFor(Double.longBitsToDouble(middle)) >= prefixIndex) {
+        high = middle;
+      } else {
+        low = middle + 1;
+      }
+    }
+    return Double.longBitsToDouble(low);
+  }
+}
@@ -0,0 +1,138 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import javax.measure.Quantity;
+import javax.measure.Unit;
+
+/**
+ * A small, thread-safe table of precomputed conversions (such as {@link javax.measure.UnitConverter
+ * UnitConverters}, or objects holding exact conversion factors) for the units that a particular
+ * meter, histogram or formatter has seen, so that converting a value does not require any lookup
+ * in a shared cache.
+ * <p>
+ * Units are compared by identity first, and then by {@link Object#equals(Object) equality}, so a
+ * unit that is equal to one that was seen before but is a different instance (such as the new
+ * instance returned by each call to {@code MetricPrefix.KILO(BYTE)}) uses the existing conversion,
+ * and does not use up one of the {@link #MAX_UNITS} entries. (Unit.equals does not allocate, but
+ * Unit.hashCode does, so this is a linear search rather than a hash lookup. Applications use only a
+ * few units.)
+ * <p>
+ * Getting the conversion for a unit that is already in the table never blocks, and does not write
+ * to any volatile field. Adding a unit makes a single compare-and-set attempt, which only fails if
+ * another thread added a unit at the same time; in that case the conversion is still returned,
+ * and the unit is added the next time it is seen.
+ *
+ * @param <Q> The kind of quantity that the units measure. Example:
+ *        {@link javax.measure.quantity.Time Time}
+ * @param <C> The type of the precomputed conversions.
+ */
+final class UnitConversionTable<Q extends Quantity<Q>, C> {
+  // The number of units whose conversions are remembered. Any application uses only a few units,
+  // so this is only a safeguard against unbounded growth.
+  static final int MAX_UNITS = 64;
+
+  private static final Entry<?, ?>[] NO_ENTRIES = new Entry<?, ?>[0];
+
+  private final Function<Unit<Q>, C> conversionFactory;
+
+  // The entries for all of the units seen so far, in the order in which they were first seen. The
+  // array is replaced with a longer copy (never modified after it is published) when a new unit is
+  // seen, so that lookups do not need any locking.
+  private final AtomicReference<Entry<?, ?>[]> entries;
+
+  // Most callers convert quantities that are all expressed in the same unit instance, so the entry
+  // that was used most recently is checked by identity before the others. This is deliberately
+  // not volatile: entries are immutable, so a thread that sees a stale (or null) value just falls
+  // back to searching the array.
+  @Nullable
+  private Entry<Q, C> lastEntry;
+
+  private static final class Entry<Q extends Quantity<Q>, C> {
+    private final Unit<Q> unit;
+    private final C conversion;
+
+    Entry(Unit<Q> unit, C conversion) {
+      this.unit = unit;
+      this.conversion = conversion;
+    }
+  }
+
+  /**
+   * Create an empty table.
+   *
+   * @param conversionFactory The function that computes the conversion for a unit that is not in
+   *        the table yet. It may be called more than once for the same unit.
+   */
+  UnitConversionTable(Function<Unit<Q>, C> conversionFactory) {
+    this.conversionFactory = checkNotNull(conversionFactory);
+    this.entries = new AtomicReference<>(NO_ENTRIES);
+  }
+
+  /**
+   * Get the conversion for a unit, computing it if the unit (or a unit equal to it) has not been
+   * seen before.
+   *
+   * @param unit The unit.
+   * @return The conversion for the unit.
+   */
+  C conversionFor(Unit<Q> unit) {
+    Entry<Q, C> lastEntry = this.lastEntry;
+    if (lastEntry != null && lastEntry.unit == unit) {
+      return lastEntry.conversion;
+    }
+    Entry<Q, C> entry = findOrAddEntry(checkNotNull(unit));
+    if (entry != lastEntry) {
+      this.lastEntry = entry;
+    }
+    return entry.conversion;
+  }
+
+  /**
+   * Get the number of units whose conversions are remembered.
+   */
+  int size() {
+    return entries.get().length;
+  }
+
+  private Entry<Q, C> findOrAddEntry(Unit<Q> unit) {
+    Entry<?, ?>[] current = entries.get();
+    Entry<Q, C> entry = findEntry(current, unit);
+    if (entry != null) {
+      return entry;
+    }
+    entry = new Entry<>(unit, conversionFactory.apply(unit));
+    if (current.length < MAX_UNITS) {
+      Entry<?, ?>[] updated = Arrays.copyOf(current, current.length + 1);
+      updated[current.length] = entry;
+      if (!entries.compareAndSet(current, updated)) {
+        // Another thread added a unit (possibly an equal one) first. Use its entry if it did.
+        Entry<Q, C> existing = findEntry(entries.get(), unit);
+        if (existing != null) {
+          return existing;
+        }
+      }
+    }
+    return entry;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Nullable
+  private static <Q extends Quantity<Q>, C> Entry<Q, C> findEntry(Entry<?, ?>[] entries,
+      Unit<Q> unit) {
+    for (Entry<?, ?> entry : entries) {
+      if (entry.unit == unit) {
+        return (Entry<Q, C>) entry;
+      }
+    }
+    for (Entry<?, ?> entry : entries) {
+      if (entry.unit.equals(unit)) {
+        return (Entry<Q, C>) entry;
+      }
+    }
+    return null;
+  }
+}
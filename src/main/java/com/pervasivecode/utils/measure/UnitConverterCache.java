@@ -0,0 +1,201 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import javax.measure.Quantity;
+import javax.measure.Unit;
+import javax.measure.UnitConverter;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import tec.uom.se.AbstractConverter;
+
+/**
+ * A thread-safe, size-bounded cache of the {@link UnitConverter} for each pair of source and target
+ * units, so that the JSR-363 implementation does not have to resolve the conversion between the
+ * same two units every time a value is scaled.
+ * <p>
+ * The least recently used converters are evicted once the cache is full, so an application that
+ * formats values in an unbounded variety of units will not leak memory.
+ * <p>
+ * Units are compared by identity rather than by {@link Object#equals(Object) equals}, since the
+ * {@code hashCode} and {@code equals} methods of uom-se units walk the whole unit definition and
+ * are more expensive than resolving the converter in the first place. The units involved in
+ * repeated conversions are normally constants or prefixed units that are created once (see
+ * {@link PrefixedUnitCache}), so they are found by identity. A unit that is equal to a cached one
+ * but is a distinct instance (such as the new instance returned by each call to
+ * {@link tec.uom.se.unit.MetricPrefix#KILO(Unit) MetricPrefix.KILO(BYTE)}) is replaced by its
+ * {@link CanonicalUnitCache canonical instance} before the converter is looked up, so it reuses the
+ * cached converter rather than occupying an entry of its own.
+ * <p>
+ * The most recently used converters are also kept in a small table indexed by the identity hash
+ * codes of their units, which is checked before the cache itself, so that looking up a converter
+ * for canonical units that were used recently does not allocate a cache key.
+ */
+final class UnitConverterCache {
+  static final int DEFAULT_MAXIMUM_SIZE = 1024;
+
+  // The number of slots in the table of recently used converters. This must be a power of two.
+  static final int RECENT_CONVERTER_SLOTS = 64;
+
+  private static final UnitConverterCache SHARED = new UnitConverterCache(DEFAULT_MAXIMUM_SIZE);
+
+  /**
+   * A converter, and the identities of its source and target units.
+   */
+  private static final class RecentConverter {
+    private final Unit<?> source;
+    private final Unit<?> target;
+    private final UnitConverter converter;
+
+    RecentConverter(Unit<?> source, Unit<?> target, UnitConverter converter) {
+      this.source = source;
+      this.target = target;
+      this.converter = converter;
+    }
+  }
+
+  /**
+   * The identities of the source and target units of a conversion.
+   */
+  private static final class ConversionKey {
+    private final Unit<?> source;
+    private final Unit<?> target;
+    private final int hashCode;
+
+    ConversionKey(Unit<?> source, Unit<?> target) {
+      this.source = source;
+      this.target = target;
+      this.hashCode = 31 * System.identityHashCode(source) + System.identityHashCode(target);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof ConversionKey)) {
+        return false;
+      }
+      ConversionKey otherKey = (ConversionKey) other;
+      return source == otherKey.source && target == otherKey.target;
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  private final LoadingCache<ConversionKey, UnitConverter> converters;
+  // Recently used converters for canonical units, each in the slot for its units' identity hash
+  // codes, replacing whichever converter was there before. The slots are deliberately not
+  // volatile: entries are immutable, so a thread that sees a stale (or null) entry just falls back
+  // to the cache.
+  private final RecentConverter[] recentConverters;
+
+  /**
+   * Get the cache instance shared by the prefix selectors and formatters in this package.
+   *
+   * @return The shared cache.
+   */
+  static UnitConverterCache shared() {
+    return SHARED;
+  }
+
+  UnitConverterCache(long maximumSize) {
+    checkArgument(maximumSize > 0, "maximumSize must be positive, but was %s", maximumSize);
+    this.converters = CacheBuilder.newBuilder() //
+        .maximumSize(maximumSize) //
+        .build(CacheLoader.from(UnitConverterCache::resolveConverter));
+    this.recentConverters = new RecentConverter[RECENT_CONVERTER_SLOTS];
+  }
+
+  /**
+   * Get a converter from one unit to another, resolving it if it is not already cached.
+   *
+   * @param <Q> The kind of quantity that the units measure. Example:
+   *        {@link javax.measure.quantity.Length Length}
+   * @param source The unit to convert values from.
+   * @param target The unit to convert values to.
+   * @return The converter.
+   * @throws javax.measure.UnconvertibleException if the units are not compatible.
+   */
+  <Q extends Quantity<Q>> UnitConverter getConverter(Unit<Q> source, Unit<Q> target) {
+    if (checkNotNull(source) == checkNotNull(target)) {
+      return AbstractConverter.IDENTITY;
+    }
+    int slot = slotFor(source, target);
+    RecentConverter recent = recentConverters[slot];
+    if (recent != null && recent.source == source && recent.target == target) {
+      return recent.converter;
+    }
+    UnitConverter converter = converters.getIfPresent(new ConversionKey(source, target));
+    if (converter != null) {
+      // Only canonical units are used as keys, so these units are canonical.
+      recentConverters[slot] = new RecentConverter(source, target, converter);
+      return converter;
+    }
+
+    // Only canonical units are used as keys, so that equal but distinct unit instances share one
+    // entry instead of each evicting a useful one.
+    CanonicalUnitCache canonicalUnits = CanonicalUnitCache.shared();
+    Unit<Q> canonicalSource = canonicalUnits.canonical(source);
+    Unit<Q> canonicalTarget = canonicalUnits.canonical(target);
+    if (canonicalSource == canonicalTarget) {
+      return AbstractConverter.IDENTITY;
+    }
+    try {
+      converter = converters.getUnchecked(new ConversionKey(canonicalSource, canonicalTarget));
+    } catch (UncheckedExecutionException uee) {
+      Throwables.throwIfUnchecked(uee.getCause());
+      throw uee;
+    }
+    // Remember only canonical units, so that a stream of equal but distinct instances does not
+    // evict useful entries.
+    if (source == canonicalSource && target == canonicalTarget) {
+      recentConverters[slot] = new RecentConverter(source, target, converter);
+    }
+    return converter;
+  }
+
+  /**
+   * Get the numeric value of a quantity, converted to the specified unit. This is equivalent to
+   * {@code quantity.to(target).getValue()}, except that it uses a cached converter and does not
+   * construct an intermediate {@link Quantity}.
+   *
+   * @param <Q> The kind of quantity to convert. Example:
+   *        {@link javax.measure.quantity.Length Length}
+   * @param quantity The quantity to convert.
+   * @param target The unit that the value should be expressed in.
+   * @return The converted value.
+   */
+  <Q extends Quantity<Q>> Number convertValue(Quantity<Q> quantity, Unit<Q> target) {
+    UnitConverter converter = getConverter(quantity.getUnit(), target);
+    // The identity converter does not preserve the type of the value (e.g. Long), but callers may
+    // depend on it to choose an exact integer code path.
+    if (converter.isIdentity()) {
+      return quantity.getValue();
+    }
+    return converter.convert(quantity.getValue());
+  }
+
+  /**
+   * Get the approximate number of converters currently in the cache.
+   */
+  long size() {
+    return converters.size();
+  }
+
+  private static int slotFor(Unit<?> source, Unit<?> target) {
+    int hash = 31 * System.identityHashCode(source) + System.identityHashCode(target);
+    return (hash ^ (hash >>> 16)) & (RECENT_CONVERTER_SLOTS - 1);
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private static UnitConverter resolveConverter(ConversionKey key) {
+    return ((Unit) key.source).getConverterTo((Unit) key.target);
+  }
+}
@@ -0,0 +1,42 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.truth.Truth.assertThat;
+import static systems.uom.unicode.CLDR.BIT;
+import static systems.uom.unicode.CLDR.BYTE;
+import static tec.uom.se.unit.MetricPrefix.KILO;
+import javax.measure.Unit;
+import org.junit.Test;
+import systems.uom.quantity.Information;
+import tec.uom.lib.common.BinaryPrefix;
+
+public class CanonicalUnitCacheTest {
+  @Test
+  public void canonical_withEqualButDistinctUnits_shouldReturnFirstInstance() {
+    CanonicalUnitCache cache = new CanonicalUnitCache(16);
+    Unit<Information> kilobytes = KILO(BYTE);
+    Unit<Information> otherKilobytes = KILO(BYTE);
+    assertThat(otherKilobytes).isNotSameAs(kilobytes);
+
+    assertThat(cache.canonical(kilobytes)).isSameAs(kilobytes);
+    assertThat(cache.canonical(otherKilobytes)).isSameAs(kilobytes);
+    assertThat(cache.canonical(kilobytes)).isSameAs(kilobytes);
+  }
+
+  @Test
+  public void canonical_withDifferentUnits_shouldKeepThemDistinct() {
+    CanonicalUnitCache cache = new CanonicalUnitCache(16);
+    assertThat(cache.canonical(BYTE)).isSameAs(BYTE);
+    assertThat(cache.canonical(BIT)).isSameAs(BIT);
+    assertThat(cache.canonical(KILO(BYTE))).isNotSameAs(cache.canonical(BinaryPrefix.KIBI(BYTE)));
+  }
+
+  @Test
+  public void canonical_withMoreUnitsThanMaximumSize_shouldStillReturnEqualUnits() {
+    CanonicalUnitCache cache = new CanonicalUnitCache(4);
+    for (int i = 0; i < 20; i++) {
+      Unit<Information> unit = BYTE.multiply(i + 2);
+      assertThat(cache.canonical(unit)).isEqualTo(unit);
+      assertThat(cache.canonical(BYTE.multiply(i + 2))).isSameAs(cache.canonical(unit));
+    }
+  }
+}
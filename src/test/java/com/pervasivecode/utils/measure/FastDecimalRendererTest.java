@@ -0,0 +1,110 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+import java.text.NumberFormat;
+import java.util.Locale;
+import java.util.Random;
+import org.junit.Test;
+
+public class FastDecimalRendererTest {
+  private static void checkMatchesNumberFormat(Locale locale, double value) {
+    String expected = NumberFormat.getInstance(locale).format(value);
+    assertThat(FastDecimalRenderer.forLocale(locale).format(value)).isEqualTo(expected);
+  }
+
+  @Test
+  public void format_withSimpleValues_shouldMatchNumberFormat() {
+    double[] values = {0, 1, 12, 999, 1_000, 1_234_567, 0.5, 1.5, 12.25, 999.999, 1023.9999,
+        0x1p43, Math.nextDown(0x1p43), 8_796_093_022_207.999};
+    for (double value : values) {
+      checkMatchesNumberFormat(Locale.US, value);
+      checkMatchesNumberFormat(Locale.US, -value);
+    }
+  }
+
+  @Test
+  public void format_withTiesAndNearTies_shouldRoundLikeNumberFormat() {
+    // Exact ties (multiples of 1/16), decimal values that are just above or just below a tie in
+    // binary, and tiny values that round to zero.
+    double[] values = {0.0625, 0.1875, 0.3125, 2.0625, 0.0005, 1.0005, 0.0015, 2.675, 0.0004999,
+        1e-300, Double.MIN_VALUE, -0.0001, -0.0};
+    for (double value : values) {
+      checkMatchesNumberFormat(Locale.US, value);
+      checkMatchesNumberFormat(Locale.US, Math.nextUp(value));
+      checkMatchesNumberFormat(Locale.US, Math.nextDown(value));
+    }
+  }
+
+  @Test
+  public void format_withRandomValues_shouldMatchNumberFormat() {
+    Random random = new Random(363);
+    for (int i = 0; i < 100_000; i++) {
+      double value = Math.pow(10, random.nextDouble() * 24 - 6) * (random.nextBoolean() ? 1 : -1);
+      checkMatchesNumberFormat(Locale.US, value);
+      // Values with few significant digits, like scaled data sizes.
+      checkMatchesNumberFormat(Locale.US, random.nextInt(1_000_000) / 1024.0);
+    }
+  }
+
+  @Test
+  public void format_withValuesThatAreNotRenderedDirectly_shouldMatchNumberFormat() {
+    double[] values = {Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 1e19,
+        861_325_746_059_870.25, Long.MAX_VALUE / 2.0, -1e300, Double.MAX_VALUE};
+    for (double value : values) {
+      checkMatchesNumberFormat(Locale.US, value);
+    }
+  }
+
+  @Test
+  public void format_withOtherSupportedLocales_shouldMatchNumberFormat() {
+    Random random = new Random(363);
+    for (Locale locale : new Locale[] {Locale.GERMANY, Locale.FRANCE, Locale.UK}) {
+      assertThat(FastDecimalRenderer.isSupported(locale)).isTrue();
+      for (int i = 0; i < 1_000; i++) {
+        checkMatchesNumberFormat(locale, Math.pow(10, random.nextDouble() * 12 - 3));
+        checkMatchesNumberFormat(locale, -Math.pow(10, random.nextDouble() * 12 - 3));
+      }
+    }
+  }
+
+  @Test
+  public void format_withLongValues_shouldMatchNumberFormat() {
+    long[] values = {0, 1, -1, 999, 1_000, -1_234_567, 9_999_999_999_999L, 10_000_000_000_000L,
+        -10_000_000_000_000L, (1L << 53) + 1, Long.MAX_VALUE, Long.MIN_VALUE};
+    for (Locale locale : new Locale[] {Locale.US, Locale.GERMANY}) {
+      for (long value : values) {
+        assertThat(FastDecimalRenderer.forLocale(locale).format(value))
+            .isEqualTo(NumberFormat.getInstance(locale).format(value));
+      }
+    }
+  }
+
+  @Test
+  public void appendTo_shouldAppendToExistingContents() {
+    StringBuilder sb = new StringBuilder("size: ");
+    assertThat(FastDecimalRenderer.getUsInstance().appendTo(1536.5, sb)).isSameAs(sb);
+    assertThat(sb.toString()).isEqualTo("size: 1,536.5");
+  }
+
+  @Test
+  public void forLocale_withUnsupportedLocale_shouldThrow() {
+    // Which locales are unsupported depends on the JDK's locale data, so look for one.
+    Locale unsupported = null;
+    for (Locale candidate : NumberFormat.getAvailableLocales()) {
+      if (!FastDecimalRenderer.isSupported(candidate)) {
+        unsupported = candidate;
+        break;
+      }
+    }
+    if (unsupported == null) {
+      return;
+    }
+    try {
+      FastDecimalRenderer.forLocale(unsupported);
+      fail("Expected an IllegalArgumentException.");
+    } catch (IllegalArgumentException iae) {
+      assertThat(iae).hasMessageThat().contains("not supported");
+    }
+  }
+}
@@ -0,0 +1,111 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.truth.Truth.assertThat;
+import static systems.uom.unicode.CLDR.BYTE;
+import javax.measure.Quantity;
+import javax.measure.Unit;
+import org.junit.Test;
+import systems.uom.quantity.Information;
+import tec.uom.lib.common.BinaryPrefix;
+import tec.uom.se.quantity.Quantities;
+
+/**
+ * Tests for branches in IecBinaryPrefixSelector that weren't covered by other tests.
+ */
+public class IecBinaryPrefixSelectorTest {
+  private final IecBinaryPrefixSelector selector = new IecBinaryPrefixSelector();
+
+  @Test
+  public void selectBestPrefixedUnit_withLongValuesAtEachBoundary_shouldPickCorrectPrefix() {
+    assertThat(selector.selectBestPrefixedUnit(0L, BYTE)).isEqualTo(BYTE);
+    assertThat(selector.selectBestPrefixedUnit(1023L, BYTE)).isEqualTo(BYTE);
+    assertThat(selector.selectBestPrefixedUnit(1024L, BYTE)).isEqualTo(BinaryPrefix.KIBI(BYTE));
+    assertThat(selector.selectBestPrefixedUnit(IecBinaryPrefixes.MEBI_FACTOR - 1, BYTE))
+        .isEqualTo(BinaryPrefix.KIBI(BYTE));
+    assertThat(selector.selectBestPrefixedUnit(IecBinaryPrefixes.MEBI_FACTOR, BYTE))
+        .isEqualTo(BinaryPrefix.MEBI(BYTE));
+    assertThat(selector.selectBestPrefixedUnit(IecBinaryPrefixes.GIBI_FACTOR, BYTE))
+        .isEqualTo(BinaryPrefix.GIBI(BYTE));
+    assertThat(selector.selectBestPrefixedUnit(IecBinaryPrefixes.TEBI_FACTOR, BYTE))
+        .isEqualTo(BinaryPrefix.TEBI(BYTE));
+    assertThat(selector.selectBestPrefixedUnit(IecBinaryPrefixes.EXBI_FACTOR - 1, BYTE))
+        .isEqualTo(BinaryPrefix.PEBI(BYTE));
+    assertThat(selector.selectBestPrefixedUnit(IecBinaryPrefixes.EXBI_FACTOR, BYTE))
+        .isEqualTo(BinaryPrefix.EXBI(BYTE));
+    assertThat(selector.selectBestPrefixedUnit(Long.MAX_VALUE, BYTE))
+        .isEqualTo(BinaryPrefix.EXBI(BYTE));
+  }
+
+  @Test
+  public void selectBestPrefixedUnit_withNegativeLongValues_shouldUsePrefixForMagnitude() {
+    assertThat(selector.selectBestPrefixedUnit(-1023L, BYTE)).isEqualTo(BYTE);
+    assertThat(selector.selectBestPrefixedUnit(-2048L, BYTE)).isEqualTo(BinaryPrefix.KIBI(BYTE));
+    assertThat(selector.selectBestPrefixedUnit(Long.MIN_VALUE, BYTE))
+        .isEqualTo(BinaryPrefix.EXBI(BYTE));
+  }
+
+  @Test
+  public void selectBestPrefixedUnit_withDoubleValuesBeyondLongRange_shouldPickCorrectPrefix() {
+    double zebi = IecBinaryPrefixes.ZEBI_FACTOR.doubleValue();
+    double yobi = IecBinaryPrefixes.YOBI_FACTOR.doubleValue();
+    assertThat(selector.selectBestPrefixedUnit(Math.scalb(1.0, 63), BYTE))
+        .isEqualTo(BinaryPrefix.EXBI(BYTE));
+    assertThat(selector.selectBestPrefixedUnit(Math.nextDown(zebi), BYTE))
+        .isEqualTo(BinaryPrefix.EXBI(BYTE));
+    assertThat(selector.selectBestPrefixedUnit(zebi, BYTE)).isEqualTo(BinaryPrefix.ZEBI(BYTE));
+    assertThat(selector.selectBestPrefixedUnit(-yobi * 3, BYTE))
+        .isEqualTo(BinaryPrefix.YOBI(BYTE));
+    assertThat(selector.selectBestPrefixedUnit(Double.NaN, BYTE)).isEqualTo(BYTE);
+    assertThat(selector.selectBestPrefixedUnit(Double.NEGATIVE_INFINITY, BYTE)).isEqualTo(BYTE);
+  }
+
+  @Test
+  public void selectBestPrefixedUnit_shouldReuseUnitInstances() {
+    Unit<Information> mebibytes = selector.selectBestPrefixedUnit(3L << 20, BYTE);
+    assertThat(selector.selectBestPrefixedUnit(5.5 * (1 << 20), BYTE)).isSameAs(mebibytes);
+  }
+
+  @Test
+  public void selectBestPrefix_withIntegerQuantity_shouldUseLongPath() {
+    Quantity<Information> fourKibibytes = Quantities.getQuantity(4096, BYTE);
+    Quantity<Information> scaled = selector.selectBestPrefix(fourKibibytes, BYTE);
+    assertThat(scaled.getUnit()).isEqualTo(BinaryPrefix.KIBI(BYTE));
+    assertThat(scaled.getValue().doubleValue()).isEqualTo(4.0d);
+  }
+
+  @Test
+  public void prefixIndexFor_withLongJustBelowBoundary_shouldBeExact() {
+    // 2^60 - 1 rounds up to 2^60 as a double, which would put it in the next prefix.
+    long justBelowExbi = IecBinaryPrefixes.EXBI_FACTOR - 1;
+    assertThat(selector.prefixIndexFor(justBelowExbi)).isEqualTo(5);
+    assertThat(selector.prefixIndexFor((double) justBelowExbi)).isEqualTo(6);
+    assertThat(selector.prefixIndexFor(Long.MIN_VALUE))
+        .isEqualTo(IecBinaryPrefixSelector.EXBI_INDEX);
+  }
+
+  @Test
+  public void scale_shouldMatchConversionToPrefixedUnit() {
+    assertThat(selector.prefixCount()).isEqualTo(9);
+    double[] values = {0, 17, 1536, 3.2e6, 1.5e12, -3.2e6, 4.5e24, 7.1e27};
+    for (double value : values) {
+      int prefixIndex = selector.prefixIndexFor(value);
+      Unit<Information> prefixedUnit = selector.prefixedUnit(BYTE, prefixIndex);
+      assertThat(prefixedUnit).isSameAs(selector.selectBestPrefixedUnit(value, BYTE));
+      assertThat(selector.scale(value, prefixIndex))
+          .isEqualTo(BYTE.getConverterTo(prefixedUnit).convert(value));
+    }
+  }
+
+  @Test
+  public void selectBestPrefix_withListener_shouldReportPrefixes() {
+    RecordingFormattingListener listener = new RecordingFormattingListener();
+    IecBinaryPrefixSelector selector = new IecBinaryPrefixSelector(listener);
+    selector.selectBestPrefix(Quantities.getQuantity(4096L, BYTE), BYTE);
+    selector.selectBestPrefixedUnit(3.0 * (1 << 20), BYTE);
+    selector.selectBestPrefixedUnit(17L, BYTE);
+
+    assertThat(listener.selectedPrefixes)
+        .containsExactly(BinaryPrefix.KIBI(BYTE), BinaryPrefix.MEBI(BYTE), BYTE).inOrder();
+    assertThat(listener.slowPaths).isEmpty();
+  }
+}
@@ -0,0 +1,126 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.truth.Truth.assertThat;
+import static systems.uom.unicode.CLDR.BIT;
+import static systems.uom.unicode.CLDR.BYTE;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.measure.Quantity;
+import javax.measure.Unit;
+import org.junit.Test;
+import systems.uom.quantity.Information;
+import tec.uom.lib.common.BinaryPrefix;
+import tec.uom.se.quantity.Quantities;
+import tec.uom.se.unit.MetricPrefix;
+
+public class InformationAccumulatorTest {
+  @Test
+  public void getTotal_withNoAmounts_shouldBeZeroBits() {
+    assertThat(new InformationAccumulator().getTotal()).isEqualTo(Quantities.getQuantity(0L, BIT));
+  }
+
+  @Test
+  public void add_withMixedUnits_shouldTotalExactly() {
+    InformationAccumulator accumulator = new InformationAccumulator();
+    accumulator.add(Quantities.getQuantity(3, MetricPrefix.KILO(BYTE)));
+    accumulator.add(Quantities.getQuantity(2L, BinaryPrefix.MEBI(BYTE)));
+    accumulator.add(Quantities.getQuantity(5, BIT));
+    accumulator.add(1.5, BinaryPrefix.KIBI(BYTE));
+    accumulator.add(-7L, BYTE);
+    Quantity<Information> total = accumulator.getTotal();
+    assertThat(total.getUnit()).isEqualTo(BIT);
+    assertThat(total.getValue())
+        .isEqualTo(3_000L * 8 + 2L * 1024 * 1024 * 8 + 5 + 1536 * 8 - 7 * 8);
+  }
+
+  @Test
+  public void add_withFractionalBits_shouldReturnDoubleTotal() {
+    InformationAccumulator accumulator = new InformationAccumulator();
+    accumulator.add(10L, BIT);
+    accumulator.add(0.25, BIT);
+    assertThat(accumulator.getTotal()).isEqualTo(Quantities.getQuantity(10.25, BIT));
+  }
+
+  @Test
+  public void add_withHugeLongValue_shouldNotOverflowExactTotal() {
+    InformationAccumulator accumulator = new InformationAccumulator();
+    accumulator.add(Long.MAX_VALUE, BinaryPrefix.KIBI(BYTE));
+    assertThat(accumulator.getTotal().getValue().doubleValue())
+        .isEqualTo(Long.MAX_VALUE * 8192.0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void add_withNaN_shouldThrow() {
+    new InformationAccumulator().add(Double.NaN, BYTE);
+  }
+
+  @Test
+  public void format_shouldUseFormatter() {
+    InformationAccumulator accumulator = new InformationAccumulator();
+    accumulator.add(512L, BinaryPrefix.KIBI(BYTE));
+    accumulator.add(0.5, BinaryPrefix.MEBI(BYTE));
+    assertThat(accumulator.format(ScalingFormatters.dataAmountInIecBinaryBytesUs()))
+        .isEqualTo("1 MiB");
+  }
+
+  @Test
+  public void getTotalThenReset_shouldStartOverFromZero() {
+    InformationAccumulator accumulator = new InformationAccumulator();
+    accumulator.add(4L, BYTE);
+    assertThat(accumulator.getTotalThenReset()).isEqualTo(Quantities.getQuantity(32L, BIT));
+    accumulator.add(1L, BYTE);
+    assertThat(accumulator.getTotal()).isEqualTo(Quantities.getQuantity(8L, BIT));
+  }
+
+  @Test
+  public void add_withManyUnits_shouldStillConvertUncachedUnits() {
+    InformationAccumulator accumulator = new InformationAccumulator();
+    long expectedBits = 0;
+    Unit<Information> unit = BYTE;
+    for (int i = 0; i < UnitConversionTable.MAX_UNITS + 10; i++) {
+      // Each of these is a distinct unit instance.
+      Unit<Information> multiple = unit.multiply(i + 1);
+      accumulator.add(2L, multiple);
+      expectedBits += 2L * 8 * (i + 1);
+    }
+    assertThat(accumulator.getTotal().getValue()).isEqualTo(expectedBits);
+  }
+
+  @Test
+  public void add_withManyEqualButDistinctUnits_shouldStillCacheOtherUnits() {
+    InformationAccumulator accumulator = new InformationAccumulator();
+    for (int i = 0; i < UnitConversionTable.MAX_UNITS + 36; i++) {
+      // Each call to KILO returns a new unit instance, but they are all equal.
+      accumulator.add(Quantities.getQuantity(1, MetricPrefix.KILO(BYTE)));
+    }
+    accumulator.add(1L, BYTE);
+    assertThat(accumulator.cachedUnitCount()).isEqualTo(2);
+    assertThat(accumulator.getTotal().getValue()).isEqualTo(100L * 8_000 + 8);
+  }
+
+  @Test
+  public void add_fromManyThreads_shouldCountEveryAmount() throws Exception {
+    InformationAccumulator accumulator = new InformationAccumulator();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 10_000; i++) {
+            accumulator.add(Quantities.getQuantity(1, MetricPrefix.KILO(BYTE)));
+            accumulator.add(1L, BIT);
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertThat(accumulator.getTotal().getValue()).isEqualTo(4L * 10_000 * (8_000 + 1));
+  }
+}
@@ -0,0 +1,172 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.pervasivecode.utils.measure.InformationRateUnits.BYTES_PER_SECOND;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.measure.Quantity;
+import org.junit.Before;
+import org.junit.Test;
+import com.google.common.base.Ticker;
+import systems.uom.quantity.InformationRate;
+
+public class InformationRateMeterTest {
+  private static final double TOLERANCE = 1e-9;
+
+  private static class FakeTicker extends Ticker {
+    private long nanos = 1_000_000L;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    void advance(long amount, TimeUnit unit) {
+      nanos += unit.toNanos(amount);
+    }
+  }
+
+  private FakeTicker ticker;
+  private InformationRateMeter meter;
+
+  @Before
+  public void setup() {
+    ticker = new FakeTicker();
+    meter = new InformationRateMeter(ticker);
+  }
+
+  private static double bytesPerSecond(Quantity<InformationRate> rate) {
+    assertThat(rate.getUnit()).isEqualTo(BYTES_PER_SECOND);
+    return rate.getValue().doubleValue();
+  }
+
+  /**
+   * Transfer bytes at a steady rate, in chunks recorded every 10ms. Chunks are recorded midway
+   * between multiples of 10ms, so that none is recorded exactly at a tick (which would make it
+   * count toward the following tick, so that the first tick would have one chunk fewer).
+   */
+  private void transferSteadily(long bytesPerSecond, long durationMillis) {
+    for (long elapsed = 0; elapsed < durationMillis; elapsed += 10) {
+      ticker.advance(5, TimeUnit.MILLISECONDS);
+      meter.record(bytesPerSecond / 100);
+      ticker.advance(5, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Test
+  public void rates_beforeFirstTick_shouldBeZero() {
+    meter.record(1_000);
+    assertThat(bytesPerSecond(meter.getOneSecondRate())).isEqualTo(0.0);
+    assertThat(bytesPerSecond(meter.getFiveSecondRate())).isEqualTo(0.0);
+    assertThat(bytesPerSecond(meter.getFifteenSecondRate())).isEqualTo(0.0);
+    assertThat(meter.getTotalBytes()).isEqualTo(1_000);
+  }
+
+  @Test
+  public void rates_afterFirstTick_shouldBeInstantRate() {
+    meter.record(1_000);
+    ticker.advance(100, TimeUnit.MILLISECONDS);
+    assertThat(bytesPerSecond(meter.getOneSecondRate())).isWithin(TOLERANCE).of(10_000);
+    assertThat(bytesPerSecond(meter.getFifteenSecondRate())).isWithin(TOLERANCE).of(10_000);
+  }
+
+  @Test
+  public void rates_withSteadyTransfer_shouldConvergeToTransferRate() {
+    transferSteadily(50_000, 60_000);
+    assertThat(bytesPerSecond(meter.getOneSecondRate())).isWithin(1).of(50_000);
+    assertThat(bytesPerSecond(meter.getFiveSecondRate())).isWithin(1).of(50_000);
+    assertThat(bytesPerSecond(meter.getFifteenSecondRate())).isWithin(1).of(50_000);
+    assertThat(meter.getTotalBytes()).isEqualTo(3_000_000);
+  }
+
+  @Test
+  public void rates_afterRateChange_shouldRespondFasterForShorterWindows() {
+    transferSteadily(10_000, 60_000);
+    transferSteadily(100_000, 2_000);
+    double oneSecond = bytesPerSecond(meter.getOneSecondRate());
+    double fiveSecond = bytesPerSecond(meter.getFiveSecondRate());
+    double fifteenSecond = bytesPerSecond(meter.getFifteenSecondRate());
+    assertThat(oneSecond).isGreaterThan(fiveSecond);
+    assertThat(fiveSecond).isGreaterThan(fifteenSecond);
+    assertThat(fifteenSecond).isGreaterThan(10_000.0);
+    assertThat(oneSecond).isLessThan(100_000.0);
+  }
+
+  @Test
+  public void rates_afterLongIdlePeriod_shouldDecayTowardZero() {
+    transferSteadily(50_000, 10_000);
+    ticker.advance(1, TimeUnit.HOURS);
+    assertThat(bytesPerSecond(meter.getOneSecondRate())).isWithin(TOLERANCE).of(0);
+    assertThat(bytesPerSecond(meter.getFifteenSecondRate())).isWithin(TOLERANCE).of(0);
+  }
+
+  @Test
+  public void rates_afterIdleTicks_shouldMatchTickingThroughThem() {
+    InformationRateMeter tickedMeter = new InformationRateMeter(ticker);
+    meter.record(5_000);
+    tickedMeter.record(5_000);
+    ticker.advance(100, TimeUnit.MILLISECONDS);
+    meter.getOneSecondRate();
+    tickedMeter.getOneSecondRate();
+    meter.record(7_000);
+    tickedMeter.record(7_000);
+    for (int i = 0; i < 30; i++) {
+      ticker.advance(100, TimeUnit.MILLISECONDS);
+      tickedMeter.getOneSecondRate();
+    }
+    // meter catches up on all 30 ticks at once, but should reach the same result.
+    assertThat(bytesPerSecond(meter.getFiveSecondRate()))
+        .isWithin(TOLERANCE).of(bytesPerSecond(tickedMeter.getFiveSecondRate()));
+  }
+
+  @Test
+  public void rates_afterBurstFollowingIdlePeriod_shouldNotDecayBurstByIdlePeriod() {
+    ticker.advance(100, TimeUnit.MILLISECONDS);
+    meter.getOneSecondRate();
+    ticker.advance(5, TimeUnit.SECONDS);
+    // busyMeter has not been idle, but it has the same rates (zero) as meter, so a burst recorded
+    // in both should affect both in the same way.
+    InformationRateMeter busyMeter = new InformationRateMeter(ticker);
+    ticker.advance(100, TimeUnit.MILLISECONDS);
+    busyMeter.getOneSecondRate();
+    meter.record(1_000_000);
+    busyMeter.record(1_000_000);
+    ticker.advance(100, TimeUnit.MILLISECONDS);
+    double expectedRate = bytesPerSecond(busyMeter.getOneSecondRate());
+    assertThat(expectedRate).isGreaterThan(500_000.0);
+    assertThat(bytesPerSecond(meter.getOneSecondRate())).isWithin(TOLERANCE).of(expectedRate);
+  }
+
+  @Test
+  public void rates_shouldBeFormattableAsBitsPerSecond() {
+    meter.record(1_000);
+    ticker.advance(100, TimeUnit.MILLISECONDS);
+    assertThat(ScalingFormatters.dataRateInSiBitsPerSecondUs().format(meter.getOneSecondRate()))
+        .isEqualTo("80 kbps");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void record_withNegativeByteCount_shouldThrow() {
+    meter.record(-1);
+  }
+
+  @Test
+  public void record_fromManyThreads_shouldCountEveryByte() throws InterruptedException {
+    InformationRateMeter sharedMeter = new InformationRateMeter();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      threads.add(new Thread(() -> {
+        for (int j = 0; j < 10_000; j++) {
+          sharedMeter.record(3);
+          sharedMeter.getOneSecondRate();
+        }
+      }));
+    }
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertThat(sharedMeter.getTotalBytes()).isEqualTo(8 * 10_000 * 3);
+  }
+}
@@ -0,0 +1,87 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.truth.Truth.assertThat;
+import static systems.uom.unicode.CLDR.BYTE;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.measure.Quantity;
+import org.junit.Test;
+import systems.uom.quantity.Information;
+import tec.uom.se.quantity.Quantities;
+
+public class LazyFormattedQuantityTest {
+  private static final Quantity<Information> SIZE = Quantities.getQuantity(1536, BYTE);
+
+  /** A formatter that counts how many times it has formatted a quantity. */
+  private static class CountingFormatter implements QuantityFormatter<Information> {
+    private final QuantityFormatter<Information> formatter =
+        ScalingFormatters.dataAmountInIecBinaryBytesUs();
+    int formatCount = 0;
+
+    @Override
+    public String format(Quantity<Information> quantity) {
+      formatCount++;
+      return formatter.format(quantity);
+    }
+  }
+
+  @Test
+  public void lazy_shouldNotFormatUntilRendered() {
+    CountingFormatter formatter = new CountingFormatter();
+    LazyFormattedQuantity<Information> lazy = formatter.lazy(SIZE);
+    assertThat(formatter.formatCount).isEqualTo(0);
+    assertThat(lazy.getQuantity()).isSameAs(SIZE);
+
+    assertThat(lazy.toString()).isEqualTo("1.5 KiB");
+    assertThat(formatter.formatCount).isEqualTo(1);
+  }
+
+  @Test
+  public void formatTo_shouldAppendFormattedQuantity() {
+    LazyFormattedQuantity<Information> lazy =
+        ScalingFormatters.dataAmountInIecBinaryBytesUs().lazy(SIZE);
+    StringBuilder buffer = new StringBuilder("Received ");
+    lazy.formatTo(buffer);
+    assertThat(buffer.toString()).isEqualTo("Received 1.5 KiB");
+  }
+
+  @Test
+  public void lazy_withStringFormat_shouldRenderFormattedQuantity() {
+    assertThat(String.format("%s",
+        ScalingFormatters.dataAmountInSiBitsUs().lazy(Quantities.getQuantity(2_000_000, BYTE))))
+            .isEqualTo("16 Mbits");
+  }
+
+  @Test
+  public void pool_shouldReuseInstancesInTurn() {
+    CountingFormatter formatter = new CountingFormatter();
+    LazyFormattedQuantityPool<Information> pool = new LazyFormattedQuantityPool<>(formatter, 2);
+    LazyFormattedQuantity<Information> first = pool.lazy(SIZE);
+    LazyFormattedQuantity<Information> second = pool.lazy(Quantities.getQuantity(3, BYTE));
+    assertThat(second).isNotSameAs(first);
+    assertThat(first.toString()).isEqualTo("1.5 KiB");
+    assertThat(second.toString()).isEqualTo("3 B");
+
+    LazyFormattedQuantity<Information> third = pool.lazy(Quantities.getQuantity(2048, BYTE));
+    assertThat(third).isSameAs(first);
+    assertThat(third.toString()).isEqualTo("2 KiB");
+    assertThat(formatter.formatCount).isEqualTo(3);
+  }
+
+  @Test
+  public void pool_shouldNotShareInstancesAcrossThreads() throws Exception {
+    LazyFormattedQuantityPool<Information> pool =
+        new LazyFormattedQuantityPool<>(ScalingFormatters.dataAmountInIecBinaryBytesUs(), 1);
+    LazyFormattedQuantity<Information> mine = pool.lazy(SIZE);
+    AtomicReference<LazyFormattedQuantity<Information>> theirs = new AtomicReference<>();
+    Thread thread = new Thread(() -> theirs.set(pool.lazy(Quantities.getQuantity(1, BYTE))));
+    thread.start();
+    thread.join();
+    assertThat(theirs.get()).isNotSameAs(mine);
+    assertThat(mine.toString()).isEqualTo("1.5 KiB");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void pool_withNoInstances_shouldThrow() {
+    new LazyFormattedQuantityPool<>(ScalingFormatters.dataAmountInIecBinaryBytesUs(), 0);
+  }
+}
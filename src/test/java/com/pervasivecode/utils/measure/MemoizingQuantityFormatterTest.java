@@ -0,0 +1,116 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.truth.Truth.assertThat;
+import static systems.uom.unicode.CLDR.BYTE;
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.measure.Quantity;
+import org.junit.Before;
+import org.junit.Test;
+import systems.uom.quantity.Information;
+import tec.uom.se.quantity.Quantities;
+import tec.uom.se.unit.MetricPrefix;
+
+public class MemoizingQuantityFormatterTest {
+  private ScalingFormatter<Information> formatter;
+  private AtomicInteger formatCount;
+  private QuantityFormatter<Information> countingFormatter;
+
+  @Before
+  public void setup() {
+    formatter = ScalingFormatters.dataAmountInIecBinaryBytesUs();
+    formatCount = new AtomicInteger();
+    countingFormatter = (quantity) -> {
+      formatCount.incrementAndGet();
+      return formatter.format(quantity);
+    };
+  }
+
+  @Test
+  public void format_shouldMatchUnderlyingFormatter() {
+    MemoizingQuantityFormatter<Information> memoizer =
+        new MemoizingQuantityFormatter<>(formatter, 100);
+    Number[] values = {0, 1536, -0.0, 2.5f, IecBinaryPrefixes.EXBI_FACTOR - 1, Double.NaN};
+    for (Number value : values) {
+      Quantity<Information> quantity = Quantities.getQuantity(value, BYTE);
+      // Once to populate the cache, and once to read it.
+      assertThat(memoizer.format(quantity)).isEqualTo(formatter.format(quantity));
+      assertThat(memoizer.format(quantity)).isEqualTo(formatter.format(quantity));
+    }
+  }
+
+  @Test
+  public void format_withRepeatedValue_shouldFormatOnlyOnce() {
+    MemoizingQuantityFormatter<Information> memoizer =
+        new MemoizingQuantityFormatter<>(countingFormatter, 100);
+    for (int i = 0; i < 10; i++) {
+      assertThat(memoizer.format(Quantities.getQuantity(4096.0, BYTE))).isEqualTo("4 KiB");
+    }
+    assertThat(formatCount.get()).isEqualTo(1);
+    assertThat(memoizer.getMissCount()).isEqualTo(1);
+    assertThat(memoizer.getHitCount()).isEqualTo(9);
+  }
+
+  @Test
+  public void format_withIntegralAndFloatingPointValues_shouldCacheSeparately() {
+    MemoizingQuantityFormatter<Information> memoizer =
+        new MemoizingQuantityFormatter<>(countingFormatter, 100);
+    // 2^53 + 1 cannot be represented exactly as a double.
+    long exact = (1L << 53) + 1;
+    memoizer.format(Quantities.getQuantity((double) exact, BYTE));
+    memoizer.format(Quantities.getQuantity(exact, BYTE));
+    assertThat(memoizer.getMissCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void format_withEqualButDistinctUnits_shouldShareOneCacheEntry() {
+    MemoizingQuantityFormatter<Information> memoizer =
+        new MemoizingQuantityFormatter<>(countingFormatter, 100);
+    for (int i = 0; i < 10; i++) {
+      assertThat(memoizer.format(Quantities.getQuantity(2, MetricPrefix.KILO(BYTE))))
+          .isEqualTo("1.953 KiB");
+    }
+    assertThat(formatCount.get()).isEqualTo(1);
+    assertThat(memoizer.getCachedValueCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void format_withBigDecimalValue_shouldBypassCache() {
+    MemoizingQuantityFormatter<Information> memoizer =
+        new MemoizingQuantityFormatter<>(countingFormatter, 100);
+    Quantity<Information> quantity = Quantities.getQuantity(new BigDecimal("1024"), BYTE);
+    assertThat(memoizer.format(quantity)).isEqualTo("1 KiB");
+    assertThat(memoizer.format(quantity)).isEqualTo("1 KiB");
+    assertThat(formatCount.get()).isEqualTo(2);
+    assertThat(memoizer.getMissCount()).isEqualTo(0);
+    assertThat(memoizer.getCachedValueCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void format_withManyDistinctValues_shouldStayWithinMaximumSize() {
+    MemoizingQuantityFormatter<Information> memoizer =
+        new MemoizingQuantityFormatter<>(formatter, 10);
+    for (int i = 0; i < 1_000; i++) {
+      memoizer.format(Quantities.getQuantity(i, BYTE));
+    }
+    assertThat(memoizer.getCachedValueCount()).isAtMost(10L);
+  }
+
+  @Test
+  public void formatAll_shouldMatchFormatOfEachValueAndUseCache() {
+    MemoizingQuantityFormatter<Information> memoizer =
+        new MemoizingQuantityFormatter<>(countingFormatter, 100);
+    double[] values = {0, 1024, 0, 1024, 1536};
+    String[] formatted = new String[values.length];
+    memoizer.formatAll(values, BYTE, formatted);
+    assertThat(formatted).asList().containsExactly("0 B", "1 KiB", "0 B", "1 KiB", "1.5 KiB")
+        .inOrder();
+    assertThat(formatCount.get()).isEqualTo(3);
+    assertThat(memoizer.getHitCount()).isEqualTo(2);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withNonPositiveMaximumSize_shouldThrow() {
+    new MemoizingQuantityFormatter<>(formatter, 0);
+  }
+}
@@ -0,0 +1,103 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.truth.Truth.assertThat;
+import static systems.uom.unicode.CLDR.BYTE;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import javax.measure.Quantity;
+import org.junit.Test;
+import systems.uom.quantity.Information;
+import tec.uom.se.quantity.Quantities;
+import tec.uom.se.unit.MetricPrefix;
+
+public class ParallelQuantityFormatterTest {
+  private final ScalingFormatter<Information> formatter =
+      ScalingFormatters.dataAmountInIecBinaryBytesUs();
+
+  private static double[] randomValues(int count) {
+    Random random = new Random(42);
+    double[] values = new double[count];
+    for (int i = 0; i < count; i++) {
+      values[i] = Math.scalb(random.nextDouble(), random.nextInt(80));
+    }
+    return values;
+  }
+
+  @Test
+  public void formatAll_withLargeBatch_shouldMatchSequentialFormatting() {
+    double[] values = randomValues(100_000);
+    String[] expected = new String[values.length];
+    formatter.formatAll(values, MetricPrefix.KILO(BYTE), expected);
+
+    String[] actual = new String[values.length];
+    new ParallelQuantityFormatter<>(formatter).formatAll(values, MetricPrefix.KILO(BYTE), actual);
+    assertThat(actual).isEqualTo(expected);
+  }
+
+  @Test
+  public void formatRange_shouldOnlyFormatTheRange() {
+    double[] values = randomValues(10_000);
+    String[] output = new String[values.length];
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      new ParallelQuantityFormatter<>(formatter, pool).formatRange(values, 100, 9_000, BYTE,
+          output);
+    } finally {
+      pool.shutdown();
+    }
+    assertThat(output[99]).isNull();
+    assertThat(output[100]).isEqualTo(formatter.format(values[100]));
+    assertThat(output[8_999]).isEqualTo(formatter.format(values[8_999]));
+    assertThat(output[9_000]).isNull();
+  }
+
+  @Test
+  public void formatAll_withLongValues_shouldFormatExactly() {
+    long[] values = new long[5_000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = IecBinaryPrefixes.EXBI_FACTOR - 1 - i;
+    }
+    String[] output = new String[values.length];
+    new ParallelQuantityFormatter<>(formatter).formatAll(values, BYTE, output);
+    for (int i = 0; i < values.length; i++) {
+      assertThat(output[i]).isEqualTo(formatter.format(Quantities.getQuantity(values[i], BYTE)));
+    }
+    assertThat(output[0]).isEqualTo("1,024 PiB");
+  }
+
+  @Test
+  public void formatAll_withStream_shouldPreserveEncounterOrder() {
+    List<Quantity<Information>> quantities = IntStream.range(0, 20_000)
+        .mapToObj((i) -> Quantities.getQuantity(i * 1_000L, BYTE))
+        .collect(Collectors.toList());
+    List<String> expected = quantities.stream().map(formatter::format).collect(Collectors.toList());
+
+    List<String> actual = new ParallelQuantityFormatter<>(formatter).formatAll(quantities.stream());
+    assertThat(actual).containsExactlyElementsIn(expected).inOrder();
+  }
+
+  @Test
+  public void formatAll_withEmptyStream_shouldReturnEmptyList() {
+    ParallelQuantityFormatter<Information> parallelFormatter =
+        new ParallelQuantityFormatter<>(formatter);
+    assertThat(parallelFormatter.formatAll(Stream.<Quantity<Information>>empty())).isEmpty();
+  }
+
+  @Test
+  public void splitIndex_shouldProduceAlignedChunksOfAtLeastMinimumSize() {
+    assertThat(ParallelQuantityFormatter.splitIndex(0, 2_000)).isEqualTo(-1);
+    int splitIndex = ParallelQuantityFormatter.splitIndex(3, 10_003);
+    assertThat(splitIndex % ParallelQuantityFormatter.CHUNK_ALIGNMENT).isEqualTo(0);
+    assertThat(splitIndex - 3).isAtLeast(ParallelQuantityFormatter.MIN_CHUNK_SIZE);
+    assertThat(10_003 - splitIndex).isAtLeast(ParallelQuantityFormatter.MIN_CHUNK_SIZE);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void formatAll_withOutputArrayTooShort_shouldThrow() {
+    new ParallelQuantityFormatter<>(formatter).formatAll(new long[3], BYTE, new String[2]);
+  }
+}
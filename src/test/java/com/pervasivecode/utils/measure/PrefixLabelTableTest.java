@@ -0,0 +1,44 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.text.NumberFormat;
+import java.util.Locale;
+import javax.measure.quantity.Length;
+import org.junit.Test;
+import systems.uom.quantity.Information;
+import tec.uom.se.unit.Units;
+
+public class PrefixLabelTableTest {
+  @Test
+  public void constructor_shouldCopyLabelsAndEncodeThemAsUtf8() {
+    String[] labels = {"µm", "m", "km"};
+    PrefixLabelTable table = new PrefixLabelTable(labels);
+    labels[1] = "changed";
+
+    assertThat(table.size()).isEqualTo(3);
+    assertThat(table.label(1)).isEqualTo("m");
+    assertThat(table.encodedLabel(0)).isEqualTo("µm".getBytes(UTF_8));
+    assertThat(table.encodedLabel(2)).isEqualTo(new byte[] {'k', 'm'});
+  }
+
+  @Test
+  public void scalingFormatter_shouldHaveLabelForEveryPrefixIndex() {
+    ScalingFormatter<Information> formatter = ScalingFormatters.dataAmountInIecBinaryBytesUs();
+    PrefixLabelTable table = formatter.prefixLabels();
+    assertThat(table.size()).isEqualTo(formatter.primitivePrefixSelector().prefixCount());
+    assertThat(table.label(0)).isEqualTo("B");
+    assertThat(table.label(1)).isEqualTo("KiB");
+    assertThat(table.label(8)).isEqualTo("YiB");
+  }
+
+  @Test
+  public void scalingFormatter_withSiPrefixes_shouldUseSimpleUnitFormatLabels() {
+    ScalingFormatter<Length> formatter = new ScalingFormatter<>(Units.METRE,
+        new SiPrefixSelector(), NumberFormat.getInstance(Locale.US));
+    PrefixLabelTable table = formatter.prefixLabels();
+    assertThat(table.label(SiPrefixSelector.BASE_INDEX)).isEqualTo("m");
+    assertThat(table.label(SiPrefixSelector.BASE_INDEX - 2)).isEqualTo("µm");
+    assertThat(table.label(SiPrefixSelector.BASE_INDEX + 1)).isEqualTo("km");
+  }
+}
@@ -0,0 +1,166 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.truth.Truth.assertThat;
+import static systems.uom.unicode.CLDR.BYTE;
+import static tec.uom.se.unit.MetricPrefix.MILLI;
+import static tec.uom.se.unit.MetricPrefix.NANO;
+import static tec.uom.se.unit.Units.SECOND;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.measure.quantity.Time;
+import org.junit.Test;
+import com.pervasivecode.utils.time.DurationFormats;
+import com.pervasivecode.utils.time.DurationFormatter;
+import systems.uom.quantity.Information;
+import tec.uom.lib.common.BinaryPrefix;
+import tec.uom.se.quantity.Quantities;
+
+public class QuantityHistogramTest {
+  private static double valueOf(javax.measure.Quantity<?> quantity) {
+    return quantity.getValue().doubleValue();
+  }
+
+  @Test
+  public void bucketBoundaries_shouldBeAlignedToPrefixFactors() {
+    QuantityHistogram<Information> histogram = QuantityHistogram.forInformation();
+    int kibiBucket = histogram.bucketIndex(1024.0);
+    assertThat(histogram.bucketIndex(Math.nextDown(1024.0))).isEqualTo(kibiBucket - 1);
+    assertThat(histogram.bucketLowerBound(kibiBucket)).isEqualTo(1024.0);
+
+    QuantityHistogram<Time> timeHistogram = QuantityHistogram.forTime();
+    int microsecondBucket = timeHistogram.bucketIndex(1000.0);
+    assertThat(timeHistogram.bucketIndex(999.9999)).isEqualTo(microsecondBucket - 1);
+    assertThat(timeHistogram.bucketLowerBound(microsecondBucket)).isEqualTo(1000.0);
+  }
+
+  @Test
+  public void bucketIndex_withValuesOutOfRange_shouldUseUnderflowAndOverflowBuckets() {
+    QuantityHistogram<Information> histogram = QuantityHistogram.forInformation();
+    assertThat(histogram.bucketIndex(0.0)).isEqualTo(0);
+    assertThat(histogram.bucketIndex(0.5)).isEqualTo(0);
+    assertThat(histogram.bucketIndex(1.0)).isEqualTo(1);
+    int overflowBucket = histogram.bucketIndex(Math.pow(1024, 6));
+    assertThat(histogram.bucketIndex(Double.MAX_VALUE)).isEqualTo(overflowBucket);
+    assertThat(histogram.bucketLowerBound(overflowBucket)).isEqualTo(Math.pow(1024, 6));
+    assertThat(overflowBucket).isEqualTo(6 * QuantityHistogram.DEFAULT_BUCKETS_PER_PREFIX + 1);
+  }
+
+  @Test
+  public void getValueAtPercentile_shouldBeWithinOneBucketBelowTheTrueValue() {
+    QuantityHistogram<Information> histogram = QuantityHistogram.forInformation();
+    for (int i = 1; i <= 10_000; i++) {
+      histogram.record(i * 100.0);
+    }
+    assertThat(histogram.getTotalCount()).isEqualTo(10_000);
+    double relativeBucketWidth = Math.pow(1024, 1.0 / QuantityHistogram.DEFAULT_BUCKETS_PER_PREFIX);
+    assertThat(valueOf(histogram.getValueAtPercentile(50))).isAtMost(500_000.0);
+    assertThat(valueOf(histogram.getValueAtPercentile(50)))
+        .isGreaterThan(500_000.0 / relativeBucketWidth);
+    assertThat(valueOf(histogram.getValueAtPercentile(99))).isAtMost(990_000.0);
+    assertThat(valueOf(histogram.getValueAtPercentile(99)))
+        .isGreaterThan(990_000.0 / relativeBucketWidth);
+    assertThat(valueOf(histogram.getMax())).isEqualTo(1_000_000.0);
+  }
+
+  @Test
+  public void getValueAtPercentile_withValueOnPrefixBoundary_shouldBeExact() {
+    QuantityHistogram<Information> histogram = QuantityHistogram.forInformation();
+    histogram.record(1024.0);
+    histogram.record(1024.0 * 1024.0);
+    assertThat(valueOf(histogram.getValueAtPercentile(50))).isEqualTo(1024.0);
+    assertThat(valueOf(histogram.getValueAtPercentile(100))).isEqualTo(1024.0 * 1024.0);
+  }
+
+  @Test
+  public void getValueAtPercentile_withNoValues_shouldBeZero() {
+    QuantityHistogram<Information> histogram = QuantityHistogram.forInformation();
+    assertThat(valueOf(histogram.getValueAtPercentile(99))).isEqualTo(0.0);
+    assertThat(valueOf(histogram.getMax())).isEqualTo(0.0);
+    assertThat(histogram.getTotalCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void record_withQuantityInAnotherUnit_shouldConvertIt() {
+    QuantityHistogram<Information> histogram = QuantityHistogram.forInformation();
+    histogram.record(Quantities.getQuantity(3, BinaryPrefix.MEBI(BYTE)));
+    assertThat(histogram.getMax()).isEqualTo(Quantities.getQuantity(3.0 * 1024 * 1024, BYTE));
+  }
+
+  @Test
+  public void record_withEqualButDistinctUnits_shouldShareOneConversion() {
+    QuantityHistogram<Information> histogram = QuantityHistogram.forInformation();
+    for (int i = 0; i < 100; i++) {
+      // BinaryPrefix.MEBI returns a new, equal unit instance on each call.
+      histogram.record(Quantities.getQuantity(1, BinaryPrefix.MEBI(BYTE)));
+      histogram.record(Quantities.getQuantity(1, BinaryPrefix.KIBI(BYTE)));
+    }
+    histogram.record(Quantities.getQuantity(1, BYTE));
+    assertThat(histogram.cachedUnitCount()).isEqualTo(3);
+    assertThat(histogram.getTotalCount()).isEqualTo(201);
+    assertThat(histogram.getMax()).isEqualTo(Quantities.getQuantity(1024.0 * 1024.0, BYTE));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void record_withNegativeValue_shouldThrow() {
+    QuantityHistogram.forInformation().record(-1.0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void record_withNaN_shouldThrow() {
+    QuantityHistogram.forInformation().record(Double.NaN);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withNegativeIecPrefixPower_shouldThrow() {
+    new QuantityHistogram<>(BYTE, PrefixSystem.IEC_BINARY, -1, 2, 10);
+  }
+
+  @Test
+  public void formatSummary_withScalingFormatter_shouldFormatScaledValues() {
+    QuantityHistogram<Information> histogram = QuantityHistogram.forInformation();
+    for (int i = 0; i < 99; i++) {
+      histogram.record(1024.0);
+    }
+    histogram.record(15.25 * 1024 * 1024);
+    assertThat(histogram.formatSummary(ScalingFormatters.dataAmountInIecBinaryBytesUs()))
+        .isEqualTo("p50: 1 KiB, p99: 1 KiB, max: 15.25 MiB");
+  }
+
+  @Test
+  public void formatSummary_withScalingDurationFormatter_shouldFormatDurations() {
+    QuantityHistogram<Time> histogram = QuantityHistogram.forTime();
+    histogram.record(Quantities.getQuantity(2, SECOND));
+    histogram.record(Quantities.getQuantity(250, MILLI(SECOND)));
+    assertThat(histogram.getMax()).isEqualTo(Quantities.getQuantity(2e9, NANO(SECOND)));
+    ScalingDurationFormatter formatter = new ScalingDurationFormatter(
+        new DurationFormatter(DurationFormats.getUsDefaultInstance()));
+    assertThat(histogram.formatSummary(formatter)).endsWith(", max: 2s");
+  }
+
+  @Test
+  public void record_fromManyThreads_shouldCountEveryValue() throws Exception {
+    QuantityHistogram<Information> histogram = QuantityHistogram.forInformation();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        final int threadNumber = t;
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 10_000; i++) {
+            histogram.record(threadNumber * 10_000 + i);
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertThat(histogram.getTotalCount()).isEqualTo(40_000);
+    assertThat(valueOf(histogram.getMax())).isEqualTo(39_999.0);
+  }
+}
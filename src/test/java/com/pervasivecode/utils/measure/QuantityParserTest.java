@@ -0,0 +1,119 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.pervasivecode.utils.measure.InformationRateUnits.BITS_PER_SECOND;
+import static org.junit.Assert.fail;
+import static systems.uom.unicode.CLDR.BIT;
+import static systems.uom.unicode.CLDR.BYTE;
+import java.util.Random;
+import javax.measure.Quantity;
+import org.junit.Test;
+import com.google.common.collect.ImmutableMap;
+import systems.uom.quantity.Information;
+import systems.uom.quantity.InformationRate;
+import tec.uom.lib.common.BinaryPrefix;
+import tec.uom.se.quantity.Quantities;
+import tec.uom.se.unit.MetricPrefix;
+
+public class QuantityParserTest {
+  private final QuantityParser<Information> informationParser =
+      QuantityParser.getUsInformationParser();
+  private final QuantityParser<InformationRate> rateParser =
+      QuantityParser.getUsInformationRateParser();
+
+  @Test
+  public void parse_withIecBinaryValue_shouldUsePrefixedUnit() {
+    Quantity<Information> parsed = informationParser.parse("1.5 GiB");
+    assertThat(parsed.getValue()).isEqualTo(1.5);
+    assertThat(parsed.getUnit()).isEqualTo(BinaryPrefix.GIBI(BYTE));
+  }
+
+  @Test
+  public void parse_withIntegralValue_shouldReturnLong() {
+    Quantity<InformationRate> parsed = rateParser.parse("200 Mbps");
+    assertThat(parsed.getValue()).isEqualTo(200L);
+    assertThat(parsed.getUnit()).isEqualTo(MetricPrefix.MEGA(BITS_PER_SECOND));
+
+    assertThat(informationParser.parse("12 kB").getUnit()).isEqualTo(MetricPrefix.KILO(BYTE));
+    assertThat(informationParser.parse("3 bit").getUnit()).isEqualTo(BIT);
+  }
+
+  @Test
+  public void parse_withGroupingSeparatorsSignsAndWhitespace_shouldWork() {
+    assertThat(informationParser.parse("  1,024 PiB\n").getValue()).isEqualTo(1024L);
+    assertThat(informationParser.parse("-1,234,567.25 B").getValue()).isEqualTo(-1234567.25);
+    assertThat(informationParser.parse("+7MiB").getValue()).isEqualTo(7L);
+    assertThat(informationParser.parse(".5 KiB").getValue()).isEqualTo(0.5);
+  }
+
+  @Test
+  public void parse_withExtremeLongValues_shouldReturnExactLongs() {
+    assertThat(informationParser.parse("9223372036854775807 B").getValue())
+        .isEqualTo(Long.MAX_VALUE);
+    assertThat(informationParser.parse("-9,223,372,036,854,775,808 B").getValue())
+        .isEqualTo(Long.MIN_VALUE);
+    assertThat(informationParser.parse("-9223372036854775807 B").getValue())
+        .isEqualTo(-Long.MAX_VALUE);
+    // One past either extreme no longer fits in a long.
+    assertThat(informationParser.parse("9223372036854775808 B").getValue())
+        .isEqualTo(Double.parseDouble("9223372036854775808"));
+    assertThat(informationParser.parse("-9223372036854775809 B").getValue())
+        .isEqualTo(Double.parseDouble("-9223372036854775809"));
+  }
+
+  @Test
+  public void parse_withManySignificantDigits_shouldMatchParseDouble() {
+    assertThat(informationParser.parse("0.1234567890123456789 B").getValue())
+        .isEqualTo(Double.parseDouble("0.1234567890123456789"));
+    assertThat(informationParser.parse("123,456,789,012,345,678,901 B").getValue())
+        .isEqualTo(Double.parseDouble("123456789012345678901"));
+  }
+
+  @Test
+  public void parse_withFormattedValues_shouldRoundTrip() {
+    ScalingFormatter<Information> formatter = ScalingFormatters.dataAmountInIecBinaryBytesUs();
+    Random random = new Random(7);
+    for (int i = 0; i < 10_000; i++) {
+      double value = Math.scalb(random.nextDouble(), random.nextInt(90)) * (i % 2 == 0 ? 1 : -1);
+      String formatted = formatter.format(value);
+      Quantity<Information> parsed = informationParser.parse(formatted);
+      assertThat(formatter.format(parsed)).isEqualTo(formatted);
+    }
+  }
+
+  @Test
+  public void parse_withRandomDecimals_shouldMatchParseDouble() {
+    Random random = new Random(11);
+    for (int i = 0; i < 10_000; i++) {
+      String number = random.nextInt(1_000_000) + "." + random.nextInt(1_000_000);
+      assertThat(informationParser.parse(number + " B").getValue())
+          .isEqualTo(Double.parseDouble(number));
+    }
+  }
+
+  @Test
+  public void parse_withBadInput_shouldThrow() {
+    String[] badInputs = {"", "GiB", "1.5", "1.5 GB/s", "1.5 gib", "1,5 GiB", "1..5 GiB", "- 1 B"};
+    for (String badInput : badInputs) {
+      try {
+        informationParser.parse(badInput);
+        fail("Expected an IllegalArgumentException for '" + badInput + "'");
+      } catch (IllegalArgumentException iae) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void constructor_withCustomLabels_shouldUseThem() {
+    QuantityParser<Information> parser = new QuantityParser<>(ImmutableMap.of(BYTE, "bytes",
+        MetricPrefix.KILO(BYTE), "kilobytes"));
+    assertThat(parser.parse("2 kilobytes")).isEqualTo(Quantities.getQuantity(2L,
+        MetricPrefix.KILO(BYTE)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withDuplicateLabels_shouldThrow() {
+    new QuantityParser<>(ImmutableMap.of(BYTE, "B", MetricPrefix.KILO(BYTE), "B"));
+  }
+}
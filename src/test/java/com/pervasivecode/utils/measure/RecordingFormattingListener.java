@@ -0,0 +1,29 @@
+package com.pervasivecode.utils.measure;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.measure.Unit;
+
+/**
+ * A FormattingListener that remembers every notification it receives, for use in tests.
+ */
+class RecordingFormattingListener implements FormattingListener {
+  final List<Integer> formattedValueCounts = new ArrayList<>();
+  final List<Unit<?>> selectedPrefixes = new ArrayList<>();
+  final List<SlowPath> slowPaths = new ArrayList<>();
+
+  @Override
+  public synchronized void formatted(Object formatter, int valueCount, long elapsedNanos) {
+    formattedValueCounts.add(valueCount);
+  }
+
+  @Override
+  public synchronized void prefixSelected(Object source, Unit<?> prefixedUnit) {
+    selectedPrefixes.add(prefixedUnit);
+  }
+
+  @Override
+  public synchronized void slowPathTaken(Object source, SlowPath slowPath) {
+    slowPaths.add(slowPath);
+  }
+}
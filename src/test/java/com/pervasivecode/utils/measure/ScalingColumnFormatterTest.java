@@ -0,0 +1,132 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.truth.Truth.assertThat;
+import static systems.uom.unicode.CLDR.BYTE;
+import static tec.uom.se.unit.Units.KELVIN;
+import java.text.NumberFormat;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import javax.measure.quantity.Temperature;
+import org.junit.Test;
+import com.pervasivecode.utils.measure.ScalingColumnFormatter.PrefixBasis;
+import systems.uom.quantity.Information;
+import tec.uom.lib.common.BinaryPrefix;
+import tec.uom.se.unit.MetricPrefix;
+import tec.uom.se.unit.Units;
+
+public class ScalingColumnFormatterTest {
+  private static final double GIBI = IecBinaryPrefixes.GIBI_FACTOR;
+
+  private final ScalingFormatter<Information> iecFormatter =
+      ScalingFormatters.dataAmountInIecBinaryBytesUs();
+
+  @Test
+  public void formatColumn_withMaximumBasis_shouldUsePrefixOfLargestValue() {
+    ScalingColumnFormatter<Information> columnFormatter =
+        new ScalingColumnFormatter<>(iecFormatter, PrefixBasis.MAXIMUM);
+    double[] values = {0.5 * GIBI, 12.25 * GIBI, -1024 * 1024, 0, 1023 * GIBI};
+    String[] output = new String[values.length];
+    assertThat(columnFormatter.formatColumn(values, BYTE, output))
+        .isEqualTo(BinaryPrefix.GIBI(BYTE));
+    assertThat(output).asList()
+        .containsExactly("0.5 GiB", "12.25 GiB", "-0.001 GiB", "0 GiB", "1,023 GiB").inOrder();
+  }
+
+  @Test
+  public void formatColumn_withMedianBasis_shouldUsePrefixOfMedianValue() {
+    ScalingColumnFormatter<Information> columnFormatter =
+        new ScalingColumnFormatter<>(iecFormatter, PrefixBasis.MEDIAN);
+    long[] values = {1536, 2048, 3 * 1024 * 1024, 512, 1024};
+    String[] output = new String[values.length];
+    assertThat(columnFormatter.formatColumn(values, BYTE, output))
+        .isEqualTo(BinaryPrefix.KIBI(BYTE));
+    assertThat(output).asList()
+        .containsExactly("1.5 KiB", "2 KiB", "3,072 KiB", "0.5 KiB", "1 KiB").inOrder();
+  }
+
+  @Test
+  public void formatColumn_withLargeIntegersInBaseUnit_shouldRenderThemExactly() {
+    ScalingColumnFormatter<Information> columnFormatter =
+        new ScalingColumnFormatter<>(iecFormatter, PrefixBasis.MEDIAN);
+    long[] values = {1, 2, 3, (1L << 53) + 1, Long.MIN_VALUE};
+    String[] output = new String[values.length];
+    assertThat(columnFormatter.formatColumn(values, BYTE, output)).isEqualTo(BYTE);
+    assertThat(output[3]).isEqualTo("9,007,199,254,740,993 B");
+    assertThat(output[4]).isEqualTo("-9,223,372,036,854,775,808 B");
+
+    // Kibibytes are a whole multiple of bytes, so they are also scaled exactly.
+    long[] kibibytes = {0, 0, 1, (1L << 50) + 1};
+    assertThat(columnFormatter.formatColumn(kibibytes, BinaryPrefix.KIBI(BYTE), output))
+        .isEqualTo(BYTE);
+    assertThat(output[2]).isEqualTo("1,024 B");
+    assertThat(output[3]).isEqualTo("1,152,921,504,606,848,000 B");
+  }
+
+  @Test
+  public void median_shouldMatchMiddleOfSortedValues() {
+    Random random = new Random(363);
+    for (int length = 1; length <= 50; length++) {
+      for (int trial = 0; trial < 20; trial++) {
+        double[] magnitudes = new double[length + 3];
+        for (int i = 0; i < magnitudes.length; i++) {
+          // Few distinct values, so that there are many duplicates.
+          magnitudes[i] = random.nextInt(length / 2 + 2);
+        }
+        double[] sorted = Arrays.copyOf(magnitudes, length);
+        Arrays.sort(sorted);
+        assertThat(ScalingColumnFormatter.median(magnitudes, length))
+            .isEqualTo(sorted[(length - 1) / 2]);
+      }
+    }
+    assertThat(ScalingColumnFormatter.median(new double[0], 0)).isEqualTo(0.0);
+  }
+
+  @Test
+  public void formatColumn_withValuesInAnotherUnit_shouldConvertThem() {
+    ScalingColumnFormatter<Information> columnFormatter =
+        new ScalingColumnFormatter<>(iecFormatter, PrefixBasis.MAXIMUM);
+    double[] values = {1.5, 2048};
+    String[] output = new String[values.length];
+    assertThat(columnFormatter.formatColumn(values, BinaryPrefix.MEBI(BYTE), output))
+        .isEqualTo(BinaryPrefix.GIBI(BYTE));
+    assertThat(output).asList().containsExactly("0.001 GiB", "2 GiB").inOrder();
+  }
+
+  @Test
+  public void formatColumn_withNonFiniteValues_shouldIgnoreThemWhenChoosingPrefix() {
+    ScalingColumnFormatter<Information> columnFormatter =
+        new ScalingColumnFormatter<>(iecFormatter, PrefixBasis.MEDIAN);
+    double[] values = {Double.POSITIVE_INFINITY, Double.NaN, 3 * GIBI};
+    String[] output = new String[values.length];
+    assertThat(columnFormatter.formatColumn(values, BYTE, output))
+        .isEqualTo(BinaryPrefix.GIBI(BYTE));
+    assertThat(output[2]).isEqualTo("3 GiB");
+  }
+
+  @Test
+  public void formatColumn_withEmptyColumn_shouldUseBaseUnit() {
+    ScalingColumnFormatter<Information> columnFormatter =
+        new ScalingColumnFormatter<>(iecFormatter, PrefixBasis.MEDIAN);
+    assertThat(columnFormatter.formatColumn(new long[0], BYTE, new String[0])).isEqualTo(BYTE);
+  }
+
+  @Test
+  public void formatColumn_withNonLinearConversion_shouldConvertEachValue() {
+    ScalingFormatter<Temperature> formatter = new ScalingFormatter<>(KELVIN,
+        PrefixSystem.SI.prefixSelector(), NumberFormat.getInstance(Locale.US));
+    ScalingColumnFormatter<Temperature> columnFormatter =
+        new ScalingColumnFormatter<>(formatter, PrefixBasis.MAXIMUM);
+    double[] values = {0, 1726.85};
+    String[] output = new String[values.length];
+    assertThat(columnFormatter.formatColumn(values, Units.CELSIUS, output))
+        .isEqualTo(MetricPrefix.KILO(KELVIN));
+    assertThat(output).asList().containsExactly("0.273 kK", "2 kK").inOrder();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void formatColumn_withOutputArrayTooShort_shouldThrow() {
+    new ScalingColumnFormatter<>(iecFormatter, PrefixBasis.MAXIMUM).formatColumn(new double[2],
+        BYTE, new String[1]);
+  }
+}
@@ -1,11 +1,16 @@
 package com.pervasivecode.utils.measure;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
 import static tec.uom.se.unit.MetricPrefix.EXA;
+import static tec.uom.se.unit.MetricPrefix.MICRO;
 import static tec.uom.se.unit.MetricPrefix.MILLI;
 import static tec.uom.se.unit.MetricPrefix.NANO;
+import static tec.uom.se.unit.Units.DAY;
 import static tec.uom.se.unit.Units.SECOND;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.temporal.ChronoUnit;
 import javax.measure.Quantity;
 import javax.measure.quantity.Time;
@@ -72,4 +77,85 @@ public class ScalingDurationFormatterTest {
     assertThat(millisFormatter.format(oneNanosecond)).isEqualTo("0ms");
     assertThat(nanosFormatter.format(oneNanosecond)).isEqualTo("1ns");
   }
+
+  @Test
+  public void formatTo_shouldAppendFormattedDuration() throws IOException {
+    Quantity<Time> oneSecMilliNano = Quantities.getQuantity(1_001_000_001L, NANO(SECOND));
+    StringBuilder sb = new StringBuilder("elapsed: ");
+    assertThat(millisFormatter.formatTo(oneSecMilliNano, sb)).isSameAs(sb);
+    assertThat(sb.toString()).isEqualTo("elapsed: 1s 1ms");
+  }
+
+  @Test
+  public void format_withLongNanos_shouldMatchQuantityFormat() {
+    assertThat(nanosFormatter.format(1_001_000_001L)).isEqualTo("1s 1ms 0µs 1ns");
+    assertThat(millisFormatter.format(1_001_000_001L)).isEqualTo("1s 1ms");
+    assertThat(nanosFormatter.format(1L)).isEqualTo("1ns");
+  }
+
+  @Test
+  public void format_withDuration_shouldMatchQuantityFormat() {
+    assertThat(nanosFormatter.format(Duration.ofSeconds(86400, 1_000_001)))
+        .isEqualTo("1d 0h 0m 0s 1ms 0µs 1ns");
+    assertThat(millisFormatter.format(Duration.ofMillis(1_001))).isEqualTo("1s 1ms");
+  }
+
+  @Test
+  public void format_withFractionalNanoseconds_shouldRoundToNearestNanosecond() {
+    assertThat(nanosFormatter.format(Quantities.getQuantity(2.7, NANO(SECOND)))).isEqualTo("3ns");
+    assertThat(nanosFormatter.format(Quantities.getQuantity(2.2, NANO(SECOND)))).isEqualTo("2ns");
+    assertThat(nanosFormatter.format(Quantities.getQuantity(1.0000000016, SECOND)))
+        .isEqualTo("1s 0ms 0µs 2ns");
+    assertThat(nanosFormatter.format(Quantities.getQuantity(4.35, SECOND))).isEqualTo("4s 350ms");
+  }
+
+  @Test
+  public void format_withQuantitiesInVariousUnits_shouldConvertExactly() {
+    Quantity<Time> microseconds = Quantities.getQuantity(123_456_789_012_345L, MICRO(SECOND));
+    assertThat(nanosFormatter.format(microseconds))
+        .isEqualTo(nanosFormatter.format(Duration.ofNanos(123_456_789_012_345_000L)));
+
+    assertThat(nanosFormatter.format(Quantities.getQuantity(2, DAY)))
+        .isEqualTo(nanosFormatter.format(Duration.ofDays(2)));
+    assertThat(nanosFormatter.format(Quantities.getQuantity(1_001, MILLI(SECOND))))
+        .isEqualTo("1s 1ms");
+    // Switching back to a previously-seen unit should still convert correctly.
+    assertThat(nanosFormatter.format(microseconds))
+        .isEqualTo(nanosFormatter.format(Duration.ofNanos(123_456_789_012_345_000L)));
+  }
+
+  @Test
+  public void format_withAlternatingUnits_shouldRememberEachConversion() {
+    for (int i = 0; i < 10; i++) {
+      assertThat(nanosFormatter.format(Quantities.getQuantity(3, MILLI(SECOND)))).isEqualTo("3ms");
+      assertThat(nanosFormatter.format(Quantities.getQuantity(7, NANO(SECOND)))).isEqualTo("7ns");
+    }
+    assertThat(nanosFormatter.cachedUnitCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void format_withNonFiniteQuantity_shouldThrow() {
+    try {
+      nanosFormatter.format(Quantities.getQuantity(Double.NaN, SECOND));
+      fail("Expected an IllegalArgumentException.");
+    } catch (IllegalArgumentException iae) {
+      assertThat(iae).hasMessageThat().contains("finite");
+    }
+  }
+
+  @Test
+  public void format_withListener_shouldReportEachCallAndFloatingPointConversions() {
+    RecordingFormattingListener listener = new RecordingFormattingListener();
+    ScalingDurationFormatter instrumented = new ScalingDurationFormatter(
+        new DurationFormatter(DurationFormats.getUsDefaultInstance()), listener);
+
+    instrumented.format(Quantities.getQuantity(1_500L, MILLI(SECOND)));
+    instrumented.format(Quantities.getQuantity(1.5, SECOND));
+    instrumented.format(1_000L);
+    instrumented.format(Duration.ofMinutes(3));
+
+    assertThat(listener.formattedValueCounts).containsExactly(1, 1, 1, 1);
+    assertThat(listener.slowPaths)
+        .containsExactly(FormattingListener.SlowPath.FLOATING_POINT_DURATION);
+  }
 }
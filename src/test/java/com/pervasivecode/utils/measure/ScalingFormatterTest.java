@@ -1,10 +1,20 @@
 package com.pervasivecode.utils.measure;
 
 import static com.google.common.truth.Truth.assertThat;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.measure.Quantity;
+import javax.measure.Unit;
 import javax.measure.quantity.Length;
 import org.junit.Test;
 import com.google.common.collect.ImmutableMap;
@@ -13,7 +23,9 @@ import com.pervasivecode.utils.measure.ScalingFormatter;
 import com.pervasivecode.utils.measure.SiPrefixSelector;
 import com.pervasivecode.utils.measure.SimpleUnitLabelProvider;
 import com.pervasivecode.utils.measure.UnitLabelProvider;
+import tec.uom.se.format.SimpleUnitFormat;
 import tec.uom.se.quantity.Quantities;
+import tec.uom.se.unit.MetricPrefix;
 import tec.uom.se.unit.Units;
 
 public class ScalingFormatterTest {
@@ -46,4 +58,199 @@ public class ScalingFormatterTest {
     assertThat(meterFmt.format(measureOfMeters(BigDecimal.valueOf(1, 21)))).isEqualTo("1 zm");
     assertThat(meterFmt.format(measureOfMeters(BigDecimal.valueOf(1, 23)))).isEqualTo("10 ym");
   }
+
+  @Test
+  public void format_double_shouldMatchFormatOfEquivalentQuantity() {
+    QuantityFormatter<Length> meterFmt = new ScalingFormatter<Length>(Units.METRE,
+        new SiPrefixSelector(), NumberFormat.getInstance(Locale.US));
+    ScalingFormatter<Length> scalingMeterFmt = (ScalingFormatter<Length>) meterFmt;
+
+    double[] values = {0, 1, 0.25, 999.5, 12_000, -12_000, 3.5e-7, 4.2e13};
+    for (double value : values) {
+      String expected = meterFmt.format(Quantities.getQuantity(value, Units.METRE));
+      assertThat(scalingMeterFmt.format(value)).isEqualTo(expected);
+    }
+    assertThat(scalingMeterFmt.format(12_000)).isEqualTo("12 km");
+    assertThat(scalingMeterFmt.format(-12_000)).isEqualTo("-12 km");
+    assertThat(scalingMeterFmt.format(0)).isEqualTo("0 m");
+  }
+
+  @Test
+  public void formatTo_shouldAppendToExistingContent() {
+    ScalingFormatter<Length> meterFmt = new ScalingFormatter<Length>(Units.METRE,
+        new SiPrefixSelector(), NumberFormat.getInstance(Locale.US));
+    StringBuilder sb = new StringBuilder("distance=");
+    assertThat(meterFmt.formatTo(1_500, sb)).isSameAs(sb);
+    sb.append(", altitude=");
+    meterFmt.formatTo(0.25, sb);
+    assertThat(sb.toString()).isEqualTo("distance=1.5 km, altitude=250 mm");
+  }
+
+  @Test
+  public void format_double_withCustomPrefixSelector_shouldUseSelectBestPrefix() {
+    QuantityPrefixSelector unscaledSelector = new QuantityPrefixSelector() {
+      @Override
+      public <T extends Quantity<T>> Quantity<T> selectBestPrefix(Quantity<T> measure,
+          Unit<T> whole) {
+        return measure.to(whole);
+      }
+    };
+    ScalingFormatter<Length> meterFmt = new ScalingFormatter<Length>(Units.METRE,
+        unscaledSelector, NumberFormat.getInstance(Locale.US));
+    assertThat(meterFmt.format(12_000)).isEqualTo("12,000 m");
+  }
+
+  @Test
+  public void format_fromManyThreadsAtOnce_shouldMatchSingleThreadedOutput() throws Exception {
+    ScalingFormatter<Length> meterFmt = new ScalingFormatter<Length>(Units.METRE,
+        new SiPrefixSelector(), NumberFormat.getInstance(Locale.US));
+
+    int numValues = 2_000;
+    String[] expected = new String[numValues];
+    for (int i = 0; i < numValues; i++) {
+      expected[i] = meterFmt.format(valueForIndex(i));
+    }
+
+    int numThreads = 8;
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    try {
+      List<Future<Integer>> results = new ArrayList<>();
+      CountDownLatch startSignal = new CountDownLatch(1);
+      for (int t = 0; t < numThreads; t++) {
+        results.add(executor.submit(() -> {
+          startSignal.await();
+          int mismatches = 0;
+          for (int rep = 0; rep < 10; rep++) {
+            for (int i = 0; i < numValues; i++) {
+              if (!expected[i].equals(meterFmt.format(valueForIndex(i)))) {
+                mismatches++;
+              }
+            }
+          }
+          return mismatches;
+        }));
+      }
+      startSignal.countDown();
+      for (Future<Integer> result : results) {
+        assertThat(result.get()).isEqualTo(0);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static double valueForIndex(int i) {
+    return (i % 2 == 0 ? 1 : -1) * Math.pow(10, (i % 50) - 25) * (1 + (i % 7) / 7.0);
+  }
+
+  @Test
+  public void format_afterChangingProvidedNumberFormat_shouldBeUnaffected() {
+    NumberFormat numberFormat = NumberFormat.getInstance(Locale.US);
+    ScalingFormatter<Length> meterFmt =
+        new ScalingFormatter<Length>(Units.METRE, new SiPrefixSelector(), numberFormat);
+    numberFormat.setMinimumFractionDigits(2);
+    assertThat(meterFmt.format(12_000)).isEqualTo("12 km");
+  }
+
+  @Test
+  public void constructor_withDifferentLabelProviders_shouldNotAffectOtherFormatters() {
+    Unit<Length> kilometre = MetricPrefix.KILO(Units.METRE);
+    String globalKilometreLabel = SimpleUnitFormat.getInstance().format(kilometre);
+
+    ScalingFormatter<Length> shortFmt = new ScalingFormatter<Length>(Units.METRE,
+        new SiPrefixSelector(), NumberFormat.getInstance(Locale.US),
+        new SimpleUnitLabelProvider<>(ImmutableMap.of(kilometre, "klicks")));
+    ScalingFormatter<Length> longFmt = new ScalingFormatter<Length>(Units.METRE,
+        new SiPrefixSelector(), NumberFormat.getInstance(Locale.US),
+        new SimpleUnitLabelProvider<>(ImmutableMap.of(kilometre, "kilometres")));
+
+    assertThat(shortFmt.format(2_000)).isEqualTo("2 klicks");
+    assertThat(longFmt.format(2_000)).isEqualTo("2 kilometres");
+    assertThat(SimpleUnitFormat.getInstance().format(kilometre)).isEqualTo(globalKilometreLabel);
+  }
+
+  @Test
+  public void formatTo_withQuantity_shouldAppendSameTextAsFormat() throws IOException {
+    ScalingFormatter<Length> meterFmt = new ScalingFormatter<Length>(Units.METRE,
+        new SiPrefixSelector(), NumberFormat.getInstance(Locale.US));
+    Quantity<Length> distance = measureOfMeters(BigDecimal.valueOf(12_345));
+
+    StringWriter writer = new StringWriter();
+    writer.write("distance=");
+    assertThat(meterFmt.formatTo(distance, writer)).isSameAs(writer);
+    assertThat(writer.toString()).isEqualTo("distance=" + meterFmt.format(distance));
+    assertThat(writer.toString()).isEqualTo("distance=12.345 km");
+  }
+
+  @Test
+  public void formatTo_withQuantityAndStringBuilder_shouldAppendSameTextAsFormat()
+      throws IOException {
+    ScalingFormatter<Length> meterFmt = new ScalingFormatter<Length>(Units.METRE,
+        new SiPrefixSelector(), NumberFormat.getInstance(Locale.US));
+    Quantity<Length> distance = Quantities.getQuantity(1_500L, Units.METRE);
+
+    StringBuilder sb = new StringBuilder("distance=");
+    assertThat(meterFmt.formatTo(distance, sb)).isSameAs(sb);
+    assertThat(sb.toString()).isEqualTo("distance=" + meterFmt.format(distance));
+    assertThat(sb.toString()).isEqualTo("distance=1.5 km");
+  }
+
+  @Test(expected = IOException.class)
+  public void formatTo_withFailingAppendable_shouldPropagateIOException() throws IOException {
+    ScalingFormatter<Length> meterFmt = new ScalingFormatter<Length>(Units.METRE,
+        new SiPrefixSelector(), NumberFormat.getInstance(Locale.US));
+    Writer brokenWriter = new Writer() {
+      @Override
+      public void write(char[] cbuf, int off, int len) throws IOException {
+        throw new IOException("broken");
+      }
+
+      @Override
+      public void flush() {}
+
+      @Override
+      public void close() {}
+    };
+    meterFmt.formatTo(measureOfMeters(BigDecimal.ONE), brokenWriter);
+  }
+
+  @Test
+  public void withListener_shouldReportFormattedValuesAndPrefixes() {
+    ScalingFormatter<Length> meterFmt = new ScalingFormatter<Length>(Units.METRE,
+        new SiPrefixSelector(), NumberFormat.getInstance(Locale.US));
+    RecordingFormattingListener listener = new RecordingFormattingListener();
+    ScalingFormatter<Length> instrumentedFmt = meterFmt.withListener(listener);
+
+    assertThat(instrumentedFmt.format(measureOfMeters(new BigDecimal(1_500))))
+        .isEqualTo(meterFmt.format(measureOfMeters(new BigDecimal(1_500))));
+    assertThat(instrumentedFmt.format(0.25)).isEqualTo("250 mm");
+    String[] output = new String[2];
+    instrumentedFmt.formatAll(new double[] {1, 2_000_000}, Units.METRE, output);
+
+    assertThat(listener.formattedValueCounts).containsExactly(1, 1, 2).inOrder();
+    assertThat(listener.selectedPrefixes).containsExactly(MetricPrefix.KILO(Units.METRE),
+        MetricPrefix.MILLI(Units.METRE), Units.METRE, MetricPrefix.MEGA(Units.METRE)).inOrder();
+    assertThat(listener.slowPaths)
+        .containsExactly(FormattingListener.SlowPath.NON_PRIMITIVE_VALUE);
+  }
+
+  @Test
+  public void withListener_withCustomPrefixSelector_shouldReportSlowPaths() {
+    QuantityPrefixSelector centimeterSelector = new QuantityPrefixSelector() {
+      @Override
+      public <T extends Quantity<T>> Quantity<T> selectBestPrefix(Quantity<T> measure,
+          Unit<T> whole) {
+        return measure.to(MetricPrefix.CENTI(whole));
+      }
+    };
+    RecordingFormattingListener listener = new RecordingFormattingListener();
+    ScalingFormatter<Length> meterFmt = new ScalingFormatter<Length>(Units.METRE,
+        centimeterSelector, NumberFormat.getInstance(Locale.US)).withListener(listener);
+
+    assertThat(meterFmt.format(0.5)).isEqualTo("50 cm");
+    assertThat(listener.slowPaths).containsExactly(
+        FormattingListener.SlowPath.QUANTITY_PREFIX_SELECTION,
+        FormattingListener.SlowPath.UNIT_SYMBOL_FORMATTING);
+    assertThat(listener.selectedPrefixes).containsExactly(MetricPrefix.CENTI(Units.METRE));
+  }
 }
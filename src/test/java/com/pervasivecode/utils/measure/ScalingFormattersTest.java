@@ -13,7 +13,10 @@ import static com.pervasivecode.utils.measure.InformationRateUnits.BITS_PER_SECO
 import static com.pervasivecode.utils.measure.InformationRateUnits.BYTES_PER_SECOND;
 import static systems.uom.unicode.CLDR.BYTE;
 import java.math.BigDecimal;
+import java.util.Locale;
 import javax.measure.Quantity;
+import javax.measure.Unit;
+import javax.measure.quantity.Length;
 import org.junit.Test;
 import com.pervasivecode.utils.measure.ScalingFormatter;
 import com.pervasivecode.utils.measure.ScalingFormatters;
@@ -21,6 +24,8 @@ import systems.uom.quantity.Information;
 import systems.uom.quantity.InformationRate;
 import systems.uom.unicode.CLDR;
 import tec.uom.se.quantity.Quantities;
+import tec.uom.se.unit.MetricPrefix;
+import tec.uom.se.unit.Units;
 
 public class ScalingFormattersTest {
   //
@@ -147,6 +152,22 @@ public class ScalingFormattersTest {
     checkBytesFormat(measureOfBytes(YOBI_FACTOR).multiply(4), "4 YiB");
   }
 
+  @Test
+  public void format_byte_withBitsThatAreNotWholeKibibytes_shouldScaleConvertedValue() {
+    checkBytesFormat(measureOfBits(4_096), "512 B");
+    checkBytesFormat(measureOfBits(16_384), "2 KiB");
+  }
+
+  @Test
+  public void format_byte_withDoubleValue_shouldMatchQuantityFormat() {
+    ScalingFormatter<Information> formatter = ScalingFormatters.dataAmountInIecBinaryBytesUs();
+    assertThat(formatter.format(17)).isEqualTo("17 B");
+    assertThat(formatter.format(KIBI_FACTOR * 1.711)).isEqualTo("1.711 KiB");
+    assertThat(formatter.format(-4.0 * MEBI_FACTOR)).isEqualTo("-4 MiB");
+    assertThat(formatter.format(4.0 * EXBI_FACTOR)).isEqualTo("4 EiB");
+    assertThat(formatter.format(YOBI_FACTOR.doubleValue() * 4)).isEqualTo("4 YiB");
+  }
+
 
   //
   // Bits per second ----------------------------------------------------------
@@ -266,4 +287,120 @@ public class ScalingFormattersTest {
     BigDecimal fourYobi = YOBI_FACTOR.multiply(BigDecimal.valueOf(4));
     checkBytesPerSecondFormat(measureOfBytesPerSecond(fourYobi), "4 YiBps");
   }
+
+  //
+  // Shared instances ---------------------------------------------------------
+  //
+
+  @Test
+  public void factoryMethods_shouldReturnSharedInstances() {
+    assertThat(ScalingFormatters.dataAmountInIecBinaryBytesUs())
+        .isSameAs(ScalingFormatters.dataAmountInIecBinaryBytesUs());
+    assertThat(ScalingFormatters.dataAmountInSiBitsUs())
+        .isSameAs(ScalingFormatters.getInstance(CLDR.BIT, PrefixSystem.SI, Locale.US));
+    assertThat(ScalingFormatters.dataRateInSiBitsPerSecondUs())
+        .isNotSameAs(ScalingFormatters.dataRateInIecBinaryBytesPerSecondUs());
+  }
+
+  @Test
+  public void getInstance_withDifferentLocales_shouldReturnDifferentFormatters() {
+    ScalingFormatter<Information> german =
+        ScalingFormatters.getInstance(BYTE, PrefixSystem.IEC_BINARY, Locale.GERMANY);
+    assertThat(german).isNotSameAs(ScalingFormatters.dataAmountInIecBinaryBytesUs());
+    assertThat(german.format(measureOfBytes(KIBI_FACTOR).multiply(1.5))).isEqualTo("1,5 KiB");
+    assertThat(german.format(measureOfBytes(KIBI_FACTOR * 1023))).isEqualTo("1.023 KiB");
+  }
+
+  @Test
+  public void getInstance_withUnitThatHasNoLabels_shouldUseDefaultLabels() {
+    ScalingFormatter<Length> meters =
+        ScalingFormatters.getInstance(Units.METRE, PrefixSystem.SI, Locale.US);
+    assertThat(meters.format(Quantities.getQuantity(12_000, Units.METRE))).isEqualTo("12 km");
+    assertThat(PrefixSystem.valueOf("SI").prefixSelector()).isInstanceOf(SiPrefixSelector.class);
+  }
+
+  @Test
+  public void getInstance_withManyDistinctUnits_shouldKeepABoundedNumberOfFormatters() {
+    for (int i = 0; i < ScalingFormatters.MAXIMUM_CACHED_FORMATTERS + 10; i++) {
+      Unit<Information> unit = BYTE.multiply(i + 2);
+      assertThat(ScalingFormatters.getInstance(unit, PrefixSystem.SI, Locale.US))
+          .isSameAs(ScalingFormatters.getInstance(unit, PrefixSystem.SI, Locale.US));
+    }
+    assertThat(ScalingFormatters.cachedFormatterCount())
+        .isAtMost((long) ScalingFormatters.MAXIMUM_CACHED_FORMATTERS);
+    assertThat(ScalingFormatters.dataAmountInSiBitsUs())
+        .isSameAs(ScalingFormatters.dataAmountInSiBitsUs());
+  }
+
+  //
+  // Batches of values --------------------------------------------------------
+  //
+
+  @Test
+  public void formatAll_shouldMatchFormatOfEachValue() {
+    ScalingFormatter<Information> formatter = ScalingFormatters.dataAmountInIecBinaryBytesUs();
+    double[] kilobytes = {0, 0.5, 1, 1.5, 1.024, 3, 1_000, 1_048.576, -2_048, 5e6, 7.5e21, 2.1e10};
+    String[] formatted = new String[kilobytes.length + 1];
+    Unit<Information> kilobyte = MetricPrefix.KILO(BYTE);
+    formatter.formatAll(kilobytes, kilobyte, formatted);
+
+    for (int i = 0; i < kilobytes.length; i++) {
+      assertThat(formatted[i])
+          .isEqualTo(formatter.format(Quantities.getQuantity(kilobytes[i], kilobyte)));
+    }
+    assertThat(formatted[2]).isEqualTo("1,000 B");
+    assertThat(formatted[4]).isEqualTo("1 KiB");
+    assertThat(formatted[kilobytes.length]).isNull();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void formatAll_withOutputArrayTooShort_shouldThrow() {
+    ScalingFormatters.dataAmountInSiBitsUs().formatAll(new double[3], CLDR.BIT, new String[2]);
+  }
+
+  @Test
+  public void formatAll_defaultImplementation_shouldMatchFormatOfEachValue() {
+    QuantityFormatter<Information> formatter = (quantity) -> quantity.toString();
+    String[] formatted = new String[2];
+    formatter.formatAll(new double[] {1, 2.5}, BYTE, formatted);
+    assertThat(formatted).asList().containsExactly(
+        Quantities.getQuantity(1.0, BYTE).toString(), Quantities.getQuantity(2.5, BYTE).toString())
+        .inOrder();
+  }
+
+  @Test
+  public void format_withLongQuantityJustBelowPrefixBoundary_shouldUseSmallerPrefix() {
+    ScalingFormatter<Information> formatter = ScalingFormatters.dataAmountInIecBinaryBytesUs();
+    Quantity<Information> justBelowExbibyte = Quantities.getQuantity(EXBI_FACTOR - 1, BYTE);
+    assertThat(formatter.format(justBelowExbibyte)).isEqualTo("1,024 PiB");
+  }
+
+  @Test
+  public void getFastInstance_shouldMatchGetInstance() {
+    ScalingFormatter<Information> formatter =
+        ScalingFormatters.getInstance(BYTE, PrefixSystem.IEC_BINARY, Locale.US);
+    ScalingFormatter<Information> fastFormatter =
+        ScalingFormatters.getFastInstance(BYTE, PrefixSystem.IEC_BINARY, Locale.US);
+    assertThat(fastFormatter).isNotSameAs(formatter);
+
+    double[] values = {0, -0.0, 0.0005, 1, 999.9995, 1023.9999, 1536, -3.2e6, 1.5e12, 4.5e24,
+        Double.MAX_VALUE, Double.NaN, Double.NEGATIVE_INFINITY};
+    for (double value : values) {
+      assertThat(fastFormatter.format(value)).isEqualTo(formatter.format(value));
+      Quantity<Information> bytes = Quantities.getQuantity(value, BYTE);
+      assertThat(fastFormatter.format(bytes)).isEqualTo(formatter.format(bytes));
+    }
+
+    String[] formatted = new String[values.length];
+    String[] fastFormatted = new String[values.length];
+    formatter.formatAll(values, BYTE, formatted);
+    fastFormatter.formatAll(values, BYTE, fastFormatted);
+    assertThat(fastFormatted).isEqualTo(formatted);
+  }
+
+  @Test
+  public void getFastInstance_shouldReturnSameInstanceForSameArguments() {
+    assertThat(ScalingFormatters.getFastInstance(BYTE, PrefixSystem.SI, Locale.US))
+        .isSameAs(ScalingFormatters.getFastInstance(BYTE, PrefixSystem.SI, Locale.US));
+  }
 }
@@ -0,0 +1,126 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.fail;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.text.NumberFormat;
+import java.util.Arrays;
+import java.util.Locale;
+import javax.measure.Quantity;
+import javax.measure.Unit;
+import javax.measure.quantity.Length;
+import org.junit.Test;
+import systems.uom.quantity.Information;
+import tec.uom.se.unit.MetricPrefix;
+import tec.uom.se.unit.Units;
+
+public class ScalingUtf8EncoderTest {
+  private final ScalingUtf8Encoder<Information> iecBytesEncoder =
+      new ScalingUtf8Encoder<>(ScalingFormatters.dataAmountInIecBinaryBytesUs());
+
+  @Test
+  public void encode_toByteArray_shouldWriteFormattedTextAtOffset() {
+    byte[] destination = new byte[20];
+    Arrays.fill(destination, (byte) '#');
+    int written = iecBytesEncoder.encode(12.5 * 1024 * 1024, destination, 3);
+    assertThat(written).isEqualTo("12.5 MiB".length());
+    assertThat(new String(destination, UTF_8)).isEqualTo("###12.5 MiB#########");
+  }
+
+  @Test
+  public void encode_toByteArray_shouldMatchFormatter() {
+    ScalingFormatter<Information> formatter = ScalingFormatters.dataAmountInSiBitsUs();
+    ScalingUtf8Encoder<Information> encoder = new ScalingUtf8Encoder<>(formatter);
+    byte[] destination = new byte[32];
+    for (double value : new double[] {0, 1, 17, 1_001, -3.2e6, 4.5e24}) {
+      int written = encoder.encode(value, destination, 0);
+      assertThat(new String(destination, 0, written, UTF_8)).isEqualTo(formatter.format(value));
+    }
+  }
+
+  @Test
+  public void encode_toByteArray_withTooLittleRoom_shouldThrowAndWriteNothing() {
+    byte[] destination = new byte[10];
+    try {
+      iecBytesEncoder.encode(12.5 * 1024 * 1024, destination, 3);
+      fail("Expected an IndexOutOfBoundsException.");
+    } catch (IndexOutOfBoundsException ioobe) {
+      assertThat(destination).isEqualTo(new byte[10]);
+    }
+  }
+
+  @Test
+  public void encode_toHeapByteBuffer_shouldWriteAtPositionAndAdvance() {
+    ByteBuffer destination = ByteBuffer.allocate(32);
+    destination.put((byte) '[');
+    iecBytesEncoder.encode(1536, destination);
+    destination.put((byte) ']');
+    destination.flip();
+    byte[] contents = new byte[destination.remaining()];
+    destination.get(contents);
+    assertThat(new String(contents, UTF_8)).isEqualTo("[1.5 KiB]");
+  }
+
+  @Test
+  public void encode_toDirectByteBuffer_shouldWriteAtPositionAndAdvance() {
+    ByteBuffer destination = ByteBuffer.allocateDirect(32);
+    int written = iecBytesEncoder.encode(1536, destination);
+    assertThat(written).isEqualTo(7);
+    assertThat(destination.position()).isEqualTo(7);
+    destination.flip();
+    byte[] contents = new byte[destination.remaining()];
+    destination.get(contents);
+    assertThat(new String(contents, UTF_8)).isEqualTo("1.5 KiB");
+  }
+
+  @Test
+  public void encode_toByteBuffer_withTooLittleRoom_shouldThrowAndWriteNothing() {
+    ByteBuffer destination = ByteBuffer.allocate(6);
+    try {
+      iecBytesEncoder.encode(1536, destination);
+      fail("Expected a BufferOverflowException.");
+    } catch (BufferOverflowException boe) {
+      assertThat(destination.position()).isEqualTo(0);
+    }
+  }
+
+  @Test
+  public void encode_withNonAsciiLabelAndNumber_shouldEncodeAsUtf8() {
+    // The French locale uses a non-breaking space as the grouping separator, and the label for
+    // micrometers contains a micro sign; neither is ASCII.
+    ScalingFormatter<Length> formatter = new ScalingFormatter<>(Units.METRE,
+        new SiPrefixSelector(), NumberFormat.getInstance(Locale.FRANCE));
+    ScalingUtf8Encoder<Length> encoder = new ScalingUtf8Encoder<>(formatter);
+    byte[] destination = new byte[32];
+    for (double value : new double[] {0.000015, 123_456}) {
+      int written = encoder.encode(value, destination, 0);
+      assertThat(new String(destination, 0, written, UTF_8)).isEqualTo(formatter.format(value));
+
+      ByteBuffer directDestination = ByteBuffer.allocateDirect(32);
+      encoder.encode(value, directDestination);
+      directDestination.flip();
+      byte[] contents = new byte[directDestination.remaining()];
+      directDestination.get(contents);
+      assertThat(new String(contents, UTF_8)).isEqualTo(formatter.format(value));
+    }
+  }
+
+  @Test
+  public void encode_withCustomPrefixSelector_shouldMatchFormatter() {
+    QuantityPrefixSelector kiloSelector = new QuantityPrefixSelector() {
+      @Override
+      public <T extends Quantity<T>> Quantity<T> selectBestPrefix(Quantity<T> measure,
+          Unit<T> whole) {
+        return measure.to(MetricPrefix.KILO(whole));
+      }
+    };
+    ScalingFormatter<Length> formatter = new ScalingFormatter<>(Units.METRE, kiloSelector,
+        NumberFormat.getInstance(Locale.US));
+    ScalingUtf8Encoder<Length> encoder = new ScalingUtf8Encoder<>(formatter);
+    byte[] destination = new byte[32];
+    int written = encoder.encode(12, destination, 0);
+    assertThat(new String(destination, 0, written, UTF_8)).isEqualTo("0.012 km");
+  }
+}
@@ -1,7 +1,9 @@
 package com.pervasivecode.utils.measure;
 
 import static com.google.common.truth.Truth.assertThat;
+import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.Random;
 import javax.measure.Quantity;
 import javax.measure.Unit;
 import javax.measure.quantity.AmountOfSubstance;
@@ -166,4 +168,104 @@ public class SiPrefixSelectorTest {
     assertThat(fluxCapacitorPowerScaled.getUnit().toString()).isEqualTo(expectedUnitSuffix);
     assertThat(fluxCapacitorPowerScaled.getValue().doubleValue()).isEqualTo(expectedMagnitude);
   }
+
+  @Test
+  public void selectBestPrefix_withNegativeValue_shouldUsePrefixForMagnitude() {
+    Quantity<Power> drain = Quantities.getQuantity(-1_210_000_000L, Units.WATT);
+    Quantity<Power> scaled = new SiPrefixSelector().selectBestPrefix(drain, Units.WATT);
+    assertThat(scaled.getUnit()).isEqualTo(MetricPrefix.GIGA(Units.WATT));
+    assertThat(scaled.getValue().doubleValue()).isEqualTo(-1.21d);
+
+    Unit<Power> milliWatts = new SiPrefixSelector().selectBestPrefixedUnit(-0.005, Units.WATT);
+    assertThat(milliWatts).isEqualTo(MetricPrefix.MILLI(Units.WATT));
+  }
+
+  @Test
+  public void selectBestPrefixedUnit_withZeroOrNonFiniteValue_shouldUseBaseUnit() {
+    SiPrefixSelector selector = new SiPrefixSelector();
+    assertThat(selector.selectBestPrefixedUnit(0, Units.WATT)).isEqualTo(Units.WATT);
+    assertThat(selector.selectBestPrefixedUnit(Double.NaN, Units.WATT)).isEqualTo(Units.WATT);
+    assertThat(selector.selectBestPrefixedUnit(Double.POSITIVE_INFINITY, Units.WATT))
+        .isEqualTo(Units.WATT);
+  }
+
+  // Reference implementation: the largest power of 1000 that is <= the magnitude, compared exactly.
+  private static Unit<Power> expectedPrefixedWatts(double value) {
+    BigDecimal magnitude = BigDecimal.valueOf(Math.abs(value));
+    if (magnitude.signum() == 0) {
+      return Units.WATT;
+    }
+    int exponent = 8;
+    BigDecimal threshold = SiThousandPrefixes.YOTTA_FACTOR;
+    while (exponent > -8 && magnitude.compareTo(threshold) < 0) {
+      exponent--;
+      threshold = threshold.divide(SiThousandPrefixes.KILO_FACTOR);
+    }
+    return exponent == 0 ? Units.WATT
+        : Units.WATT.transform(new RationalConverter(BigInteger.TEN.pow(Math.max(0, exponent * 3)),
+            BigInteger.TEN.pow(Math.max(0, -exponent * 3))));
+  }
+
+  @Test
+  public void selectBestPrefixedUnit_nearEveryThreshold_shouldMatchExactComparison() {
+    SiPrefixSelector selector = new SiPrefixSelector();
+    for (int exponent = -27; exponent <= 27; exponent++) {
+      double powerOfTen = Double.parseDouble("1e" + exponent);
+      double[] values = {powerOfTen, Math.nextUp(powerOfTen), Math.nextDown(powerOfTen),
+          powerOfTen * 5, -powerOfTen, -Math.nextDown(powerOfTen)};
+      for (double value : values) {
+        assertThat(selector.selectBestPrefixedUnit(value, Units.WATT))
+            .isEqualTo(expectedPrefixedWatts(value));
+      }
+    }
+
+    Random random = new Random(363);
+    for (int i = 0; i < 10_000; i++) {
+      double value = Math.pow(10, random.nextDouble() * 60 - 30);
+      assertThat(selector.selectBestPrefixedUnit(value, Units.WATT))
+          .isEqualTo(expectedPrefixedWatts(value));
+    }
+  }
+
+  @Test
+  public void selectBestPrefixedUnit_shouldReuseUnitInstancesForEachBaseUnit() {
+    SiPrefixSelector selector = new SiPrefixSelector();
+    Unit<Power> kilowatts = selector.selectBestPrefixedUnit(1_500, Units.WATT);
+    assertThat(kilowatts).isEqualTo(MetricPrefix.KILO(Units.WATT));
+    assertThat(selector.selectBestPrefixedUnit(2_500, Units.WATT)).isSameAs(kilowatts);
+    assertThat(selector.selectBestPrefixedUnit(2_500, Units.METRE))
+        .isEqualTo(MetricPrefix.KILO(Units.METRE));
+  }
+
+  @Test
+  public void scale_shouldMatchConversionToPrefixedUnit() {
+    SiPrefixSelector selector = new SiPrefixSelector();
+    assertThat(selector.prefixCount()).isEqualTo(17);
+    Random random = new Random(363);
+    for (int i = 0; i < 10_000; i++) {
+      double value = Math.pow(10, random.nextDouble() * 60 - 30);
+      int prefixIndex = selector.prefixIndexFor(value);
+      Unit<Power> prefixedUnit = selector.prefixedUnit(Units.WATT, prefixIndex);
+      assertThat(prefixedUnit).isSameAs(selector.selectBestPrefixedUnit(value, Units.WATT));
+      assertThat(selector.scale(value, prefixIndex))
+          .isEqualTo(Units.WATT.getConverterTo(prefixedUnit).convert(value));
+    }
+  }
+
+  @Test
+  public void selectBestPrefix_withListener_shouldReportPrefixesAndNonPrimitiveValues() {
+    RecordingFormattingListener listener = new RecordingFormattingListener();
+    SiPrefixSelector selector = new SiPrefixSelector(listener);
+    selector.selectBestPrefix(Quantities.getQuantity(new BigDecimal("2500"), Units.WATT),
+        Units.WATT);
+    selector.selectBestPrefixedUnit(0.002, Units.WATT);
+    // The primitive methods are not reported.
+    selector.prefixIndexFor(5_000_000.0);
+
+    assertThat(listener.selectedPrefixes)
+        .containsExactly(MetricPrefix.KILO(Units.WATT), MetricPrefix.MILLI(Units.WATT))
+        .inOrder();
+    assertThat(listener.slowPaths)
+        .containsExactly(FormattingListener.SlowPath.NON_PRIMITIVE_VALUE);
+  }
 }
@@ -0,0 +1,117 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.truth.Truth.assertThat;
+import static systems.uom.unicode.CLDR.BYTE;
+import java.text.NumberFormat;
+import java.util.Locale;
+import java.util.Random;
+import org.junit.Test;
+import systems.uom.quantity.Information;
+import tec.uom.lib.common.BinaryPrefix;
+import tec.uom.se.quantity.Quantities;
+
+public class StickyPrefixSelectorTest {
+  private static final double KIBI = IecBinaryPrefixes.KIBI_FACTOR;
+  private static final double MEBI = IecBinaryPrefixes.MEBI_FACTOR;
+
+  private static void assertSameAsUnderlyingSelector(PrimitivePrefixSelector selector,
+      double[] values) {
+    StickyPrefixSelector sticky = new StickyPrefixSelector(selector);
+    for (double value : values) {
+      assertThat(sticky.prefixIndexFor(value)).isEqualTo(selector.prefixIndexFor(value));
+    }
+  }
+
+  private static double[] valuesNearBoundaries(double factor, int maxPower) {
+    double[] values = new double[(maxPower + 1) * 4];
+    double boundary = 1.0;
+    for (int i = 0; i <= maxPower; i++) {
+      values[i * 4] = boundary;
+      values[i * 4 + 1] = Math.nextDown(boundary);
+      values[i * 4 + 2] = -boundary * 1.5;
+      values[i * 4 + 3] = Math.nextUp(boundary);
+      boundary *= factor;
+    }
+    return values;
+  }
+
+  @Test
+  public void prefixIndexFor_withoutHysteresis_shouldMatchUnderlyingSelectorAtBoundaries() {
+    assertSameAsUnderlyingSelector(new IecBinaryPrefixSelector(), valuesNearBoundaries(KIBI, 8));
+    assertSameAsUnderlyingSelector(new SiPrefixSelector(), valuesNearBoundaries(1000.0, 8));
+    assertSameAsUnderlyingSelector(new SiPrefixSelector(), valuesNearBoundaries(0.001, 8));
+    assertSameAsUnderlyingSelector(new SiPrefixSelector(),
+        new double[] {1e-30, 0.0, 1e30, Double.NaN, 5.0, Double.POSITIVE_INFINITY, -1e-5});
+  }
+
+  @Test
+  public void prefixIndexFor_withoutHysteresis_shouldMatchUnderlyingSelectorForRandomSeries() {
+    Random random = new Random(3);
+    double[] values = new double[10_000];
+    double value = 1.0;
+    for (int i = 0; i < values.length; i++) {
+      // A random walk that usually stays within the same prefix.
+      value = Math.max(1e-12, value * Math.exp(random.nextGaussian()));
+      values[i] = value;
+    }
+    assertSameAsUnderlyingSelector(new IecBinaryPrefixSelector(), values);
+    assertSameAsUnderlyingSelector(new SiPrefixSelector(), values);
+  }
+
+  @Test
+  public void prefixIndexFor_withLargeLongValues_shouldMatchUnderlyingSelector() {
+    IecBinaryPrefixSelector selector = new IecBinaryPrefixSelector();
+    StickyPrefixSelector sticky = new StickyPrefixSelector(selector);
+    long[] values = {IecBinaryPrefixes.EXBI_FACTOR, IecBinaryPrefixes.EXBI_FACTOR - 1, 5L,
+        Long.MAX_VALUE, Long.MIN_VALUE, IecBinaryPrefixes.EXBI_FACTOR - 1};
+    for (long value : values) {
+      assertThat(sticky.prefixIndexFor(value)).isEqualTo(selector.prefixIndexFor(value));
+    }
+  }
+
+  @Test
+  public void prefixIndexFor_withHysteresis_shouldKeepPreviousPrefixNearBoundary() {
+    StickyPrefixSelector sticky = new StickyPrefixSelector(new IecBinaryPrefixSelector(), 0.1);
+    int kibiIndex = 1;
+    int mebiIndex = 2;
+    assertThat(sticky.prefixIndexFor(1000 * KIBI)).isEqualTo(kibiIndex);
+    assertThat(sticky.prefixIndexFor(1.05 * MEBI)).isEqualTo(kibiIndex);
+    assertThat(sticky.prefixIndexFor(1.1 * MEBI)).isEqualTo(mebiIndex);
+    assertThat(sticky.prefixIndexFor(0.95 * MEBI)).isEqualTo(mebiIndex);
+    assertThat(sticky.prefixIndexFor(0.5 * MEBI)).isEqualTo(kibiIndex);
+  }
+
+  @Test
+  public void prefixIndexFor_withZero_shouldNotForgetPreviousPrefix() {
+    StickyPrefixSelector sticky = new StickyPrefixSelector(new SiPrefixSelector(), 0.1);
+    assertThat(sticky.prefixIndexFor(0.9e6)).isEqualTo(SiPrefixSelector.BASE_INDEX + 1);
+    assertThat(sticky.prefixIndexFor(0.0)).isEqualTo(SiPrefixSelector.BASE_INDEX);
+    assertThat(sticky.prefixIndexFor(1.05e6)).isEqualTo(SiPrefixSelector.BASE_INDEX + 1);
+  }
+
+  @Test
+  public void selectBestPrefix_withHysteresis_shouldKeepPreviousPrefix() {
+    StickyPrefixSelector sticky = new StickyPrefixSelector(new IecBinaryPrefixSelector(), 0.1);
+    assertThat(sticky.selectBestPrefix(Quantities.getQuantity(1023L * 1024, BYTE), BYTE))
+        .isEqualTo(Quantities.getQuantity(1023L, BinaryPrefix.KIBI(BYTE)));
+    assertThat(sticky.selectBestPrefix(Quantities.getQuantity(1, BinaryPrefix.MEBI(BYTE)), BYTE)
+        .getUnit()).isEqualTo(BinaryPrefix.KIBI(BYTE));
+  }
+
+  @Test
+  public void scalingFormatter_withStickyPrefixSelector_shouldNotFlipPrefixes() {
+    ScalingFormatter<Information> formatter = new ScalingFormatter<>(BYTE,
+        new StickyPrefixSelector(new IecBinaryPrefixSelector(), 0.1),
+        NumberFormat.getInstance(Locale.US), SimpleUnitLabelProviders.getUsLabeler());
+    assertThat(formatter.format(1023.5 * KIBI)).isEqualTo("1,023.5 KiB");
+    assertThat(formatter.format(MEBI)).isEqualTo("1,024 KiB");
+    assertThat(formatter.format(1023.5 * KIBI)).isEqualTo("1,023.5 KiB");
+    assertThat(formatter.format(2 * MEBI)).isEqualTo("2 MiB");
+    assertThat(formatter.format(0.95 * MEBI)).isEqualTo("0.95 MiB");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withHysteresisTooLarge_shouldThrow() {
+    new StickyPrefixSelector(new SiPrefixSelector(), 1.0);
+  }
+}
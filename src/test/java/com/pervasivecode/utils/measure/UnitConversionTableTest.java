@@ -0,0 +1,53 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.truth.Truth.assertThat;
+import static systems.uom.unicode.CLDR.BIT;
+import static systems.uom.unicode.CLDR.BYTE;
+import static tec.uom.se.unit.MetricPrefix.KILO;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.measure.Unit;
+import org.junit.Test;
+import systems.uom.quantity.Information;
+
+public class UnitConversionTableTest {
+  @Test
+  public void conversionFor_withEqualButDistinctUnits_shouldReuseOneConversion() {
+    AtomicInteger factoryCalls = new AtomicInteger();
+    UnitConversionTable<Information, String> table = new UnitConversionTable<>(unit -> {
+      factoryCalls.incrementAndGet();
+      return unit.toString();
+    });
+    String conversion = table.conversionFor(KILO(BYTE));
+    for (int i = 0; i < UnitConversionTable.MAX_UNITS + 36; i++) {
+      assertThat(table.conversionFor(KILO(BYTE))).isSameAs(conversion);
+    }
+    assertThat(factoryCalls.get()).isEqualTo(1);
+    assertThat(table.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void conversionFor_withAlternatingUnits_shouldComputeEachConversionOnce() {
+    AtomicInteger factoryCalls = new AtomicInteger();
+    UnitConversionTable<Information, String> table = new UnitConversionTable<>(unit -> {
+      factoryCalls.incrementAndGet();
+      return unit.toString();
+    });
+    for (int i = 0; i < 10; i++) {
+      assertThat(table.conversionFor(BYTE)).isEqualTo(BYTE.toString());
+      assertThat(table.conversionFor(BIT)).isEqualTo(BIT.toString());
+    }
+    assertThat(factoryCalls.get()).isEqualTo(2);
+    assertThat(table.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void conversionFor_withMoreUnitsThanMaximum_shouldStillConvertEveryUnit() {
+    UnitConversionTable<Information, Unit<Information>> table =
+        new UnitConversionTable<>(unit -> unit);
+    for (int i = 0; i < UnitConversionTable.MAX_UNITS + 10; i++) {
+      Unit<Information> unit = BYTE.multiply(i + 2);
+      assertThat(table.conversionFor(unit)).isSameAs(unit);
+    }
+    assertThat(table.size()).isEqualTo(UnitConversionTable.MAX_UNITS);
+  }
+}
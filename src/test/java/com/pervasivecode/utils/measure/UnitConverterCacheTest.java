@@ -0,0 +1,112 @@
+package com.pervasivecode.utils.measure;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+import static systems.uom.unicode.CLDR.BYTE;
+import static tec.uom.se.unit.MetricPrefix.KILO;
+import static tec.uom.se.unit.MetricPrefix.NANO;
+import static tec.uom.se.unit.Units.SECOND;
+import java.util.ArrayList;
+import java.util.List;
+import javax.measure.Unit;
+import javax.measure.UnconvertibleException;
+import javax.measure.UnitConverter;
+import javax.measure.quantity.Length;
+import org.junit.Test;
+import systems.uom.quantity.Information;
+import tec.uom.se.quantity.Quantities;
+import tec.uom.se.unit.MetricPrefix;
+import tec.uom.se.unit.Units;
+
+public class UnitConverterCacheTest {
+  @Test
+  public void getConverter_shouldConvertLikeTheUnits() {
+    UnitConverterCache cache = new UnitConverterCache(16);
+    assertThat(cache.getConverter(KILO(BYTE), BYTE).convert(1.5)).isEqualTo(1500.0);
+    assertThat(cache.getConverter(NANO(SECOND), SECOND).convert(1e9)).isEqualTo(1.0);
+  }
+
+  @Test
+  public void getConverter_withSameUnitInstances_shouldReuseCachedConverter() {
+    UnitConverterCache cache = new UnitConverterCache(16);
+    Unit<Information> kilobytes = KILO(BYTE);
+    UnitConverter first = cache.getConverter(kilobytes, BYTE);
+    UnitConverter second = cache.getConverter(kilobytes, BYTE);
+    assertThat(second).isSameAs(first);
+    assertThat(cache.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void getConverter_withEqualButDistinctUnits_shouldStillConvertCorrectly() {
+    UnitConverterCache cache = new UnitConverterCache(16);
+    // MetricPrefix.KILO creates a new Unit instance each time, but an equal one.
+    assertThat(cache.getConverter(KILO(BYTE), BYTE).convert(2.0)).isEqualTo(2000.0);
+    assertThat(cache.getConverter(KILO(BYTE), BYTE).convert(3.0)).isEqualTo(3000.0);
+  }
+
+  @Test
+  public void getConverter_withManyEqualButDistinctUnits_shouldUseOneEntry() {
+    UnitConverterCache cache = new UnitConverterCache(16);
+    UnitConverter first = cache.getConverter(KILO(BYTE), BYTE);
+    for (int i = 0; i < 100; i++) {
+      assertThat(cache.getConverter(KILO(BYTE), BYTE)).isSameAs(first);
+    }
+    assertThat(cache.size()).isEqualTo(1);
+    assertThat(cache.getConverter(KILO(BYTE), KILO(BYTE)).isIdentity()).isTrue();
+    assertThat(cache.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void getConverter_withSameUnit_shouldReturnIdentityWithoutCaching() {
+    UnitConverterCache cache = new UnitConverterCache(16);
+    assertThat(cache.getConverter(BYTE, BYTE).isIdentity()).isTrue();
+    assertThat(cache.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void getConverter_withManyUnitPairs_shouldStayWithinMaximumSize() {
+    UnitConverterCache cache = new UnitConverterCache(4);
+    Unit<Length> unit = Units.METRE;
+    for (MetricPrefix prefix : MetricPrefix.values()) {
+      Unit<Length> prefixedUnit = unit.transform(prefix.getConverter());
+      assertThat(cache.getConverter(unit, prefixedUnit).convert(0.0)).isEqualTo(0.0);
+    }
+    assertThat(cache.size()).isAtMost(4L);
+  }
+
+  @Test
+  public void getConverter_withMoreUnitPairsThanRecentSlots_shouldReturnTheRightConverters() {
+    UnitConverterCache cache = new UnitConverterCache(1024);
+    List<Unit<Length>> units = new ArrayList<>();
+    for (int i = 0; i < UnitConverterCache.RECENT_CONVERTER_SLOTS * 3; i++) {
+      units.add(Units.METRE.multiply(i + 2));
+    }
+    for (int pass = 0; pass < 2; pass++) {
+      for (int i = 0; i < units.size(); i++) {
+        // Slots are shared by colliding pairs, so look each one up twice, in different orders.
+        assertThat(cache.getConverter(units.get(i), Units.METRE).convert(1.0)).isEqualTo(i + 2.0);
+        assertThat(cache.getConverter(Units.METRE, units.get(i)).convert(i + 2.0)).isEqualTo(1.0);
+      }
+    }
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  @Test
+  public void getConverter_withIncompatibleUnits_shouldThrowUnconvertibleException() {
+    UnitConverterCache cache = new UnitConverterCache(16);
+    try {
+      cache.getConverter((Unit) BYTE, (Unit) SECOND);
+      fail("Expected an UnconvertibleException.");
+    } catch (UnconvertibleException ue) {
+      // expected
+    }
+  }
+
+  @Test
+  public void convertValue_shouldMatchQuantityTo() {
+    UnitConverterCache cache = UnitConverterCache.shared();
+    Unit<Information> kilobytes = KILO(BYTE);
+    assertThat(cache.convertValue(Quantities.getQuantity(3_000L, BYTE), kilobytes).doubleValue())
+        .isEqualTo(Quantities.getQuantity(3_000L, BYTE).to(kilobytes).getValue().doubleValue());
+  }
+}